@@ -0,0 +1,34 @@
+package com.anvistudio.boutique.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Thread pool for the post-order pipeline (see OrderEventListener).
+ * Bounded in threads and queue. When the queue is full, new tasks are rejected and OrderEventListener drops
+ * them with a log line, so a burst of orders never makes the checkout request run emails and rollups itself.
+ */
+@Configuration
+public class AsyncConfig {
+
+    public static final String ORDER_EVENT_EXECUTOR = "orderEventExecutor";
+
+    @Bean(name = ORDER_EVENT_EXECUTOR)
+    public ThreadPoolTaskExecutor orderEventExecutor(@Value("${boutique.orders.events.threads:2}") int threads,
+                                                     @Value("${boutique.orders.events.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("order-events-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        // Finish queued emails and rollups on shutdown
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,108 @@
+package com.anvistudio.boutique.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.jpa.autoconfigure.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Prepares cart_items for the unique (user_id, product_id) constraint (CartItem, uk_cart_items_user_product).
+ *
+ * Carts written before the constraint existed may hold several lines for the same product, and then
+ * ddl-auto=update cannot add the constraint (it only logs the error) and the cart upserts would keep inserting
+ * duplicates. So before the EntityManagerFactory runs the schema update, the duplicates of each (user, product)
+ * are merged into its oldest line with the quantities added up, in one transaction. Once the constraint exists
+ * there is nothing to merge and this is a single GROUP BY query. A failing merge stops the startup.
+ */
+@Component(CartItemsMigration.BEAN_NAME)
+public class CartItemsMigration {
+
+    static final String BEAN_NAME = "cartItemsMigration";
+
+    private static final String DUPLICATES_SQL = "SELECT user_id, product_id, MIN(id), SUM(quantity) FROM cart_items "
+            + "GROUP BY user_id, product_id HAVING COUNT(*) > 1";
+    private static final String KEEP_SQL = "UPDATE cart_items SET quantity = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND product_id = ? AND id <> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CartItemsMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Makes the EntityManagerFactory (and with it the schema update) wait for the merge.
+     */
+    @Component
+    static class SchemaUpdateDependency extends EntityManagerFactoryDependsOnPostProcessor {
+        SchemaUpdateDependency() {
+            super(BEAN_NAME);
+        }
+    }
+
+    @PostConstruct
+    public void mergeDuplicateLines() {
+        // Plain JDBC: the JPA transaction manager needs the EntityManagerFactory, which waits for this
+        Integer merged = jdbcTemplate.execute((ConnectionCallback<Integer>) this::mergeDuplicateLines);
+        if (merged != null && merged > 0) {
+            System.out.println("CART INFO: Merged duplicate cart lines of " + merged + " products.");
+        }
+    }
+
+    private int mergeDuplicateLines(Connection connection) throws SQLException {
+        if (!tableExists(connection)) {
+            return 0; // New database: Hibernate creates the table with the constraint
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement duplicates = connection.prepareStatement(DUPLICATES_SQL);
+             PreparedStatement keep = connection.prepareStatement(KEEP_SQL);
+             PreparedStatement delete = connection.prepareStatement(DELETE_SQL)) {
+            int merged = 0;
+            try (ResultSet rs = duplicates.executeQuery()) {
+                while (rs.next()) {
+                    long keepId = rs.getLong(3);
+                    keep.setInt(1, rs.getInt(4));
+                    keep.setLong(2, keepId);
+                    keep.addBatch();
+                    delete.setLong(1, rs.getLong(1));
+                    delete.setLong(2, rs.getLong(2));
+                    delete.setLong(3, keepId);
+                    delete.addBatch();
+                    merged++;
+                }
+            }
+            if (merged > 0) {
+                keep.executeBatch();
+                delete.executeBatch();
+            }
+            connection.commit();
+            return merged;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static boolean tableExists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{"cart_items", "CART_ITEMS"}) {
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
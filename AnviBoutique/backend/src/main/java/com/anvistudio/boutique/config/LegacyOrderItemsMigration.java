@@ -0,0 +1,145 @@
+package com.anvistudio.boutique.config;
+
+import com.anvistudio.boutique.model.OrderItem;
+import com.anvistudio.boutique.repository.OrderItemRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copies the lines of orders placed before order_items existed into order_items, so order history and sales
+ * reporting include them.
+ *
+ * Those orders only have the text snapshot the old OrderService wrote, "2x Silk Saree [ID:12] (₹9000.00); ...",
+ * with the line total in brackets. It has no list price or discount, so the unit price is the price paid and the
+ * discount 0; SKU, category and image are taken from the product if it still exists. Orders that already have
+ * lines are skipped, so this runs once per order. Text that cannot be parsed completely is left alone and shown
+ * as it is (Order.legacyItemsSnapshot).
+ */
+@Component
+public class LegacyOrderItemsMigration {
+
+    private static final String PENDING_SQL = "SELECT o.id, o.order_items_snapshot FROM orders o "
+            + "WHERE o.order_items_snapshot IS NOT NULL AND o.order_items_snapshot <> '' "
+            + "AND NOT EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id)";
+    private static final String PRODUCTS_SQL = "SELECT id, sku, category, image_url FROM products WHERE id IN (%s)";
+
+    // One line of the old snapshot; lines are joined with "; "
+    private static final Pattern LINE = Pattern.compile("(\\d+)x (.+?) \\[ID:(\\d+)\\] \\(₹([0-9.,]+)\\)(?:; |$)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyOrderItemsMigration(JdbcTemplate jdbcTemplate, OrderItemRepository orderItemRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderItemRepository = orderItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void copyLegacyOrderItems() {
+        Map<Long, String> pending = new LinkedHashMap<>();
+        jdbcTemplate.query(PENDING_SQL, rs -> {
+            pending.put(rs.getLong(1), rs.getString(2));
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<OrderItem>> itemsByOrder = new LinkedHashMap<>();
+        List<Long> unparsed = new ArrayList<>();
+        for (Map.Entry<Long, String> order : pending.entrySet()) {
+            List<OrderItem> items = parse(order.getValue());
+            if (items == null) {
+                unparsed.add(order.getKey());
+            } else {
+                itemsByOrder.put(order.getKey(), items);
+            }
+        }
+        if (!itemsByOrder.isEmpty()) {
+            addProductDetails(itemsByOrder);
+            transactionTemplate.executeWithoutResult(status ->
+                    itemsByOrder.forEach(orderItemRepository::insertAll));
+            System.out.println("ORDER INFO: Copied the lines of " + itemsByOrder.size() + " orders from their text snapshot.");
+        }
+        if (!unparsed.isEmpty()) {
+            System.err.println("ORDER ERROR: Could not parse the text snapshot of orders " + unparsed
+                    + "; their text is shown instead of lines.");
+        }
+    }
+
+    /**
+     * @return the lines of the snapshot, or null unless the whole text is a list of lines.
+     */
+    static List<OrderItem> parse(String snapshot) {
+        String text = snapshot.trim();
+        List<OrderItem> items = new ArrayList<>();
+        Matcher matcher = LINE.matcher(text);
+        int end = 0;
+        while (matcher.find()) {
+            if (matcher.start() != end) {
+                return null;
+            }
+            end = matcher.end();
+            int quantity = Integer.parseInt(matcher.group(1));
+            BigDecimal lineTotal = parseAmount(matcher.group(4));
+            if (quantity <= 0 || lineTotal == null) {
+                return null;
+            }
+            OrderItem item = new OrderItem();
+            item.setProductId(Long.parseLong(matcher.group(3)));
+            item.setProductName(matcher.group(2));
+            item.setQuantity(quantity);
+            item.setLineTotal(lineTotal);
+            item.setUnitPrice(lineTotal.divide(BigDecimal.valueOf(quantity), 2, RoundingMode.HALF_UP));
+            item.setDiscountPercent(0);
+            items.add(item);
+        }
+        return end == text.length() && !items.isEmpty() ? items : null;
+    }
+
+    /**
+     * "9000.00", or "9000,00" from a JVM with a comma decimal separator.
+     */
+    private static BigDecimal parseAmount(String amount) {
+        String normalized = amount.indexOf('.') < 0 ? amount.replace(',', '.') : amount.replace(",", "");
+        try {
+            return new BigDecimal(normalized).setScale(2, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void addProductDetails(Map<Long, List<OrderItem>> itemsByOrder) {
+        Map<Long, List<OrderItem>> itemsByProduct = new HashMap<>();
+        for (List<OrderItem> items : itemsByOrder.values()) {
+            for (OrderItem item : items) {
+                itemsByProduct.computeIfAbsent(item.getProductId(), id -> new ArrayList<>()).add(item);
+            }
+        }
+        String placeholders = String.join(", ", Collections.nCopies(itemsByProduct.size(), "?"));
+        jdbcTemplate.query(String.format(PRODUCTS_SQL, placeholders), rs -> {
+            for (OrderItem item : itemsByProduct.get(rs.getLong(1))) {
+                item.setSku(rs.getString(2));
+                item.setCategory(rs.getString(3));
+                item.setImageUrl(rs.getString(4));
+            }
+        }, itemsByProduct.keySet().toArray());
+    }
+}
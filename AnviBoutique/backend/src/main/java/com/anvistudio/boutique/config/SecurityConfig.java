@@ -97,6 +97,8 @@ public class SecurityConfig {
                                 "/policy_terms", // <--- ADDED
                                 "/policy_shipping", // <--- ADDED
                                 "/customer/profile/verify-new-email",
+                                // Guest carts: CartRestController serves visitors by their guest cart cookie
+                                "/api/cart", "/api/cart/**",
                                 "/css/**", "/js/**", "/images/**"
                         ).permitAll()
                         .anyRequest().authenticated()
@@ -1,10 +1,14 @@
 package com.anvistudio.boutique.controller.rest;
 
+import com.anvistudio.boutique.dto.BulkPricingRequestDTO;
+import com.anvistudio.boutique.dto.ProductImportResultDTO;
+import com.anvistudio.boutique.dto.ProductInventoryDTO;
 import com.anvistudio.boutique.model.Product;
 import com.anvistudio.boutique.model.Order;
 import com.anvistudio.boutique.model.Review;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.service.*;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -12,6 +16,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,14 +37,19 @@ public class AdminRestController {
     private final ContactService contactService;
     private final OrderService orderService;
     private final ReviewService reviewService;
+    private final ProductImportService productImportService;
+    private final ProductPricingService productPricingService;
 
     public AdminRestController(ProductService productService, UserService userService, ContactService contactService,
-                               OrderService orderService, ReviewService reviewService) {
+                               OrderService orderService, ReviewService reviewService,
+                               ProductImportService productImportService, ProductPricingService productPricingService) {
         this.productService = productService;
         this.userService = userService;
         this.contactService = contactService;
         this.orderService = orderService;
         this.reviewService = reviewService;
+        this.productImportService = productImportService;
+        this.productPricingService = productPricingService;
     }
 
     // =========================================================================
@@ -78,14 +88,12 @@ public class AdminRestController {
 
         Map<String, String> response = new HashMap<>();
         try {
-            Order order = orderService.getOrderById(orderId)
-                    .orElseThrow(() -> new IllegalArgumentException("Order not found."));
-
-            order.setStatus(Order.OrderStatus.valueOf(newStatus));
-            orderService.saveOrder(order);
+            orderService.updateStatus(orderId, Order.OrderStatus.valueOf(newStatus));
 
             response.put("message", "Order #" + orderId + " status updated to " + newStatus);
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             response.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(response);
@@ -104,8 +112,7 @@ public class AdminRestController {
                         .body(Map.of("error", "Order must be in RETURN_REQUESTED state."));
             }
 
-            order.setStatus(Order.OrderStatus.RETURNED);
-            orderService.saveOrder(order);
+            orderService.updateStatus(orderId, Order.OrderStatus.RETURNED);
 
             response.put("message", "Return finalized for order #" + orderId);
             return ResponseEntity.ok(response);
@@ -149,7 +156,7 @@ public class AdminRestController {
     // =========================================================================
 
     @GetMapping("/products")
-    public ResponseEntity<List<Product>> getInventory(@RequestParam(required = false) String category) {
+    public ResponseEntity<List<ProductInventoryDTO>> getInventory(@RequestParam(required = false) String category) {
         return ResponseEntity.ok(productService.getProductsByCategoryOrAll(category));
     }
 
@@ -164,6 +171,56 @@ public class AdminRestController {
         return ResponseEntity.ok(productService.saveProduct(product));
     }
 
+    /**
+     * POST /api/admin/products/import
+     * Bulk create/update by SKU. The body is streamed as CSV (text/csv or ?format=csv, header row first)
+     * or newline-delimited JSON (one product object per line).
+     */
+    @PostMapping("/products/import")
+    public ResponseEntity<?> importProducts(HttpServletRequest request,
+                                            @RequestParam(required = false) String format) {
+        String contentType = request.getContentType();
+        boolean csv = "csv".equalsIgnoreCase(format)
+                || (format == null && contentType != null && contentType.toLowerCase().contains("csv"));
+        try {
+            ProductImportResultDTO result = productImportService.importProducts(request.getInputStream(),
+                    csv ? ProductImportService.Format.CSV : ProductImportService.Format.NDJSON);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * POST /api/admin/products/bulk-discount
+     * Sale event pricing: {"category": "Lehengas", "discountPercent": 20} or {"discounts": {"12": 30, "15": 0}}.
+     */
+    @PostMapping("/products/bulk-discount")
+    public ResponseEntity<?> applyBulkDiscount(@RequestBody BulkPricingRequestDTO request) {
+        try {
+            return ResponseEntity.ok(productPricingService.applyDiscounts(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * PUT /api/admin/products/{id}/flash-sale
+     * Flash-sale mode: {"enabled": true} sends checkouts of the product through the waiting room.
+     */
+    @PutMapping("/products/{id}/flash-sale")
+    public ResponseEntity<Map<String, String>> setFlashSale(@PathVariable Long id, @RequestBody Map<String, Boolean> request) {
+        try {
+            boolean enabled = Boolean.TRUE.equals(request.get("enabled"));
+            productService.setFlashSale(id, enabled);
+            return ResponseEntity.ok(Map.of("message", enabled ? "Flash-sale mode enabled." : "Flash-sale mode disabled."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/products/{id}")
     public ResponseEntity<Map<String, String>> deleteProduct(@PathVariable Long id) {
         try {
@@ -174,6 +231,31 @@ public class AdminRestController {
         }
     }
 
+    /**
+     * GET /api/admin/analytics/sales?days=30&limit=10
+     * Top sellers, most returned products and revenue per category from the order lines.
+     */
+    @GetMapping("/analytics/sales")
+    public ResponseEntity<?> getSalesReport(@RequestParam(defaultValue = "30") int days,
+                                            @RequestParam(defaultValue = "10") int limit) {
+        if (days <= 0 || limit <= 0 || limit > 100) {
+            return ResponseEntity.badRequest().body(Map.of("error", "days must be positive and limit between 1 and 100."));
+        }
+        return ResponseEntity.ok(orderService.getSalesReport(days, limit));
+    }
+
+    /**
+     * GET /api/admin/analytics/daily-sales?days=30
+     * Units and revenue per day, from the daily rollup maintained after each order.
+     */
+    @GetMapping("/analytics/daily-sales")
+    public ResponseEntity<?> getDailySales(@RequestParam(defaultValue = "30") int days) {
+        if (days <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "days must be positive."));
+        }
+        return ResponseEntity.ok(orderService.getDailySales(days));
+    }
+
     // =========================================================================
     // 5. Contact Messages
     // =========================================================================
@@ -1,5 +1,6 @@
 package com.anvistudio.boutique.controller.rest;
 
+import com.anvistudio.boutique.service.CartService;
 import com.anvistudio.boutique.service.UserService;
 import com.anvistudio.boutique.dto.RegistrationDTO;
 import com.anvistudio.boutique.model.Customer;
@@ -38,10 +39,13 @@ public class AuthRestController {
 
     private final UserService userService;
     private final AuthenticationManager authenticationManager; // ← ADD THIS
+    private final CartService cartService;
 
-    public AuthRestController(UserService userService,AuthenticationManager authenticationManager) {
+    public AuthRestController(UserService userService,AuthenticationManager authenticationManager,
+                              CartService cartService) {
         this.userService = userService;
         this.authenticationManager=authenticationManager;
+        this.cartService = cartService;
     }
 
     // =========================================================================
@@ -195,7 +199,12 @@ public ResponseEntity<Map<String, Object>> getCurrentSession(
  * Explicitly logs out the user
  */
 @PostMapping("/logout")
-public ResponseEntity<Map<String, String>> logout(HttpServletRequest request) {
+public ResponseEntity<Map<String, String>> logout(
+        @AuthenticationPrincipal UserDetails userDetails,
+        HttpServletRequest request) {
+    if (userDetails != null) {
+        cartService.flushCart(userDetails.getUsername());
+    }
     request.getSession().invalidate();
     return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
 }
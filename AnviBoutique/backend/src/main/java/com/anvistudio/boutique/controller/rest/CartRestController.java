@@ -1,22 +1,25 @@
 package com.anvistudio.boutique.controller.rest;
 
-import com.anvistudio.boutique.model.CartItem;
+import com.anvistudio.boutique.dto.CartDTO;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.service.CartService;
 import com.anvistudio.boutique.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * REST Controller for Shopping Cart management.
  * Provides endpoints for React to fetch, add, update, and remove cart items.
+ * Requests without a logged-in user work on the guest cart named by the guest cart cookie.
  */
 @RestController
 @RequestMapping("/api/cart")
@@ -43,58 +46,68 @@ public class CartRestController {
 
     /**
      * GET /api/cart
-     * Returns the current user's cart items and total price.
+     * Returns the current user's cart lines and total price, or the visitor's guest cart.
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getCart(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = getAuthenticatedUser(userDetails);
+    public ResponseEntity<CartDTO> getCart(
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
 
+        if (userDetails == null) {
+            return ResponseEntity.ok(cartService.getGuestCart(CartService.guestTokenFrom(request)));
+        }
+
+        User user = getAuthenticatedUser(userDetails);
         if (user == null) {
-            // Frontend can use this 401 to show 'Guest Cart' (localStorage) or redirect to login
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        List<CartItem> items = cartService.getCartItems(user.getId());
-        double total = cartService.getCartTotal(user.getId());
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("items", items);
-        response.put("total", total);
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(cartService.getCart(user.getId()));
     }
 
     /**
      * POST /api/cart/add
-     * Adds a product to the user's cart.
+     * Adds a product to the user's cart. Visitors get a guest cart, created with its cookie on the first add;
+     * every add renews the cookie, so a cart in use does not expire.
      */
     @PostMapping("/add")
     public ResponseEntity<Map<String, String>> addItemToCart(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam Long productId,
-            @RequestParam(defaultValue = "1") int quantity) {
-
-        if (userDetails == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(Map.of("error", "You must be logged in to add items to your cart."));
-        }
+            @RequestParam(defaultValue = "1") int quantity,
+            HttpServletRequest request) {
 
         try {
-            cartService.addProductToCart(userDetails.getUsername(), productId, quantity);
-            return ResponseEntity.ok(Map.of("message", "Item added to cart successfully."));
+            if (userDetails != null) {
+                cartService.addProductToCart(userDetails.getUsername(), productId, quantity);
+                return ResponseEntity.ok(Map.of("message", "Item added to cart successfully."));
+            }
+
+            String guestToken = CartService.guestTokenFrom(request);
+            if (guestToken == null) {
+                guestToken = UUID.randomUUID().toString();
+            }
+            cartService.addProductToGuestCart(guestToken, productId, quantity);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, guestCartCookie(guestToken).toString())
+                    .body(Map.of("message", "Item added to cart successfully."));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", "Error adding item: " + e.getMessage()));
         }
     }
 
     /**
-     * DELETE /api/cart/items/{itemId}
-     * Removes an item from the cart completely.
+     * DELETE /api/cart/items/{productId}
+     * Removes a product from the cart completely.
      */
-    @DeleteMapping("/items/{itemId}")
-    public ResponseEntity<Map<String, String>> removeItemFromCart(@PathVariable Long itemId) {
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<Map<String, String>> removeItemFromCart(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long productId,
+            HttpServletRequest request) {
+
         try {
-            cartService.removeItem(itemId);
+            removeItem(userDetails, request, productId);
             return ResponseEntity.ok(Map.of("message", "Item removed from cart."));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", "Failed to remove item."));
@@ -102,24 +115,55 @@ public class CartRestController {
     }
 
     /**
-     * PUT /api/cart/items/{itemId}
-     * Updates the quantity of an existing item in the cart.
+     * PUT /api/cart/items/{productId}
+     * Updates the quantity of a product already in the cart.
      */
-    @PutMapping("/items/{itemId}")
+    @PutMapping("/items/{productId}")
     public ResponseEntity<Map<String, String>> updateCartItemQuantity(
-            @PathVariable Long itemId,
-            @RequestParam int quantity) {
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable Long productId,
+            @RequestParam int quantity,
+            HttpServletRequest request) {
 
         try {
             if (quantity <= 0) {
-                cartService.removeItem(itemId);
+                removeItem(userDetails, request, productId);
                 return ResponseEntity.ok(Map.of("message", "Item removed because quantity was 0."));
             }
 
-            cartService.updateItemQuantity(itemId, quantity);
+            if (userDetails != null) {
+                cartService.updateItemQuantity(userDetails.getUsername(), productId, quantity);
+            } else {
+                cartService.updateGuestItemQuantity(requireGuestToken(request), productId, quantity);
+            }
             return ResponseEntity.ok(Map.of("message", "Cart item quantity updated."));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", "Failed to update quantity."));
         }
     }
+
+    private void removeItem(UserDetails userDetails, HttpServletRequest request, Long productId) {
+        if (userDetails != null) {
+            cartService.removeItem(userDetails.getUsername(), productId);
+        } else {
+            cartService.removeGuestItem(requireGuestToken(request), productId);
+        }
+    }
+
+    private static String requireGuestToken(HttpServletRequest request) {
+        String guestToken = CartService.guestTokenFrom(request);
+        if (guestToken == null) {
+            throw new IllegalArgumentException("Cart item not found.");
+        }
+        return guestToken;
+    }
+
+    private static ResponseCookie guestCartCookie(String guestToken) {
+        return ResponseCookie.from(CartService.GUEST_CART_COOKIE, guestToken)
+                .httpOnly(true)
+                .path("/")
+                .maxAge(CartService.GUEST_CART_MAX_AGE)
+                .sameSite("Lax")
+                .build();
+    }
 }
\ No newline at end of file
@@ -1,10 +1,11 @@
 package com.anvistudio.boutique.controller.rest;
 
+import com.anvistudio.boutique.dto.HomeSnapshotDTO;
 import com.anvistudio.boutique.model.ContactMessage;
 import com.anvistudio.boutique.model.Customer;
-import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.service.CategoryService;
 import com.anvistudio.boutique.service.ContactService;
-import com.anvistudio.boutique.service.ProductService;
+import com.anvistudio.boutique.service.HomeSnapshotService;
 import com.anvistudio.boutique.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -12,7 +13,6 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -25,12 +25,15 @@ import java.util.Optional;
 @CrossOrigin(origins = "http://localhost:5173", allowCredentials = "true")
 public class HomeRestController {
 
-    private final ProductService productService;
+    private final HomeSnapshotService homeSnapshotService;
+    private final CategoryService categoryService;
     private final ContactService contactService;
     private final UserService userService;
 
-    public HomeRestController(ProductService productService, ContactService contactService, UserService userService) {
-        this.productService = productService;
+    public HomeRestController(HomeSnapshotService homeSnapshotService, CategoryService categoryService,
+                              ContactService contactService, UserService userService) {
+        this.homeSnapshotService = homeSnapshotService;
+        this.categoryService = categoryService;
         this.contactService = contactService;
         this.userService = userService;
     }
@@ -39,22 +42,20 @@ public class HomeRestController {
      * GET /api/public/init
      * Fetches initial data for the landing page, including products and user context.
      * Replaces the logic from the old home() method.
+     * The catalog part comes from a cached snapshot of product cards, not the full product list.
      */
     @GetMapping("/init")
     public ResponseEntity<Map<String, Object>> getHomeData(@AuthenticationPrincipal UserDetails userDetails) {
         Map<String, Object> response = new HashMap<>();
 
-        // 1. Fetch products for the homepage grid
-        List<Product> products = productService.getAllProducts();
-        response.put("products", products);
+        // 1. Cached catalog snapshot: new arrivals and sale items (card fields only)
+        HomeSnapshotDTO snapshot = homeSnapshotService.getSnapshot();
+        response.put("version", snapshot.getVersion());
+        response.put("newArrivals", snapshot.getNewArrivals());
+        response.put("saleItems", snapshot.getSaleItems());
 
-        // 2. Fetch basic categories for navigation/filtering
-        String[] categories = {
-                "Sarees", "Lehengas", "Kurtis", "Long Frocks", "Mom & Me", "Crop Top – Skirts",
-                "Handlooms", "Casual Frocks", "Ready To Wear", "Dupattas", "Kids wear",
-                "Dress Material", "Blouses", "Fabrics"
-        };
-        response.put("categories", categories);
+        // 2. Categories for navigation/filtering (cached registry)
+        response.put("categories", categoryService.getCategoryNames());
 
         // 3. Add User context if the user is currently logged in
         if (userDetails != null) {
@@ -1,17 +1,19 @@
 package com.anvistudio.boutique.controller.rest;
 
+import com.anvistudio.boutique.dto.CartDTO;
 import com.anvistudio.boutique.model.Address;
 import com.anvistudio.boutique.model.CartItem;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.service.*;
 import com.stripe.exception.StripeException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,15 +32,24 @@ public class PaymentRestController {
     private final UserService userService;
     private final OrderService orderService;
     private final AddressService addressService;
+    private final StockReservationService stockReservationService;
+    private final FlashSaleService flashSaleService;
+    private final IdempotencyService idempotencyService;
+
+    private static final String FINALIZE_SCOPE = "payment.finalize";
 
     public PaymentRestController(StripeService stripeService, CartService cartService,
                                  UserService userService, OrderService orderService,
-                                 AddressService addressService) {
+                                 AddressService addressService, StockReservationService stockReservationService,
+                                 FlashSaleService flashSaleService, IdempotencyService idempotencyService) {
         this.stripeService = stripeService;
         this.cartService = cartService;
         this.userService = userService;
         this.orderService = orderService;
         this.addressService = addressService;
+        this.stockReservationService = stockReservationService;
+        this.flashSaleService = flashSaleService;
+        this.idempotencyService = idempotencyService;
     }
 
     private User getAuthenticatedUser(UserDetails userDetails) {
@@ -49,30 +60,58 @@ public class PaymentRestController {
     /**
      * GET /api/payment/checkout-data
      * Provides the React frontend with cart items, addresses, and the Stripe clientSecret.
+     * Reserves the cart's stock until reservationExpiresAt; 409 if a product does not have enough left.
+     * Carts with flash-sale products first need admission from the waiting room; otherwise the response is
+     * 429 with the queuePosition and a Retry-After header, and nothing touches stock or Stripe.
+     * With the checkout's Idempotency-Key header, reloading the checkout for the same amount returns the
+     * PaymentIntent created first instead of creating another one.
      */
     @GetMapping("/checkout-data")
-    public ResponseEntity<Map<String, Object>> getCheckoutData(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<Map<String, Object>> getCheckoutData(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         User user = getAuthenticatedUser(userDetails);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        List<CartItem> cartItems = cartService.getCartItems(user.getId());
-        if (cartItems.isEmpty()) {
+        CartDTO cart = cartService.getCart(user.getId());
+        if (cart.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Your cart is empty."));
         }
 
-        double totalPrice = cartService.getCartTotal(user.getId());
+        // Flash sale: wait for a turn before any database write or Stripe call
+        Map<Long, Integer> quantities = cart.getQuantities();
+        FlashSaleService.Admission admission = flashSaleService.admit(user.getId(), quantities);
+        if (!admission.isAdmitted()) {
+            return waitingRoomResponse(admission);
+        }
+
+        // Hold the stock before any payment is initialized
+        Date reservationExpiresAt;
+        try {
+            reservationExpiresAt = stockReservationService.reserve(user.getId(), quantities);
+        } catch (IllegalStateException e) {
+            flashSaleService.leave(user.getId(), quantities.keySet());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+        flashSaleService.reserved(user.getId(), quantities.keySet(), reservationExpiresAt);
+
+        long totalPaise = cart.getTotalPaise();
         List<Address> addresses = addressService.getAddressesByUserId(user.getId());
 
         Map<String, Object> response = new HashMap<>();
-        response.put("cartItems", cartItems);
-        response.put("totalPrice", totalPrice);
+        response.put("cartItems", cart.getItems());
+        response.put("totalPrice", cart.getTotal());
         response.put("addresses", addresses);
+        response.put("reservationExpiresAt", reservationExpiresAt);
 
         try {
             // Create Stripe PaymentIntent and provide the clientSecret to React
-            String clientSecret = stripeService.createPaymentIntent(totalPrice);
+            // The amount is part of the key: Stripe rejects a reused key with different parameters
+            String intentKey = IdempotencyService.isValidKey(idempotencyKey)
+                    ? "checkout-" + user.getId() + "-" + idempotencyKey + "-" + totalPaise : null;
+            String clientSecret = stripeService.createPaymentIntent(totalPaise, intentKey);
             response.put("stripeClientSecret", clientSecret);
         } catch (StripeException e) {
             response.put("stripeError", "Could not initialize Stripe: " + e.getMessage());
@@ -84,11 +123,13 @@ public class PaymentRestController {
     /**
      * POST /api/payment/finalize
      * Finalizes the order after successful Stripe payment or selection of COD.
+     * Requires the Idempotency-Key header for every payment mode: a retry of a placed order returns the
+     * original response and places nothing.
      */
     @PostMapping("/finalize")
-    @Transactional
     public ResponseEntity<Map<String, String>> finalizeOrder(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, String> requestData) {
 
         User user = getAuthenticatedUser(userDetails);
@@ -96,6 +137,15 @@ public class PaymentRestController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
+        if (idempotencyKey == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", IdempotencyService.HEADER + " header is required."));
+        }
+        // Runs in one transaction; anything but a 2xx response rolls it back, including the stock already taken
+        return idempotencyService.execute(FINALIZE_SCOPE, user.getId(), idempotencyKey, requestData,
+                () -> placeOrder(user, requestData));
+    }
+
+    private ResponseEntity<Map<String, String>> placeOrder(User user, Map<String, String> requestData) {
         try {
             Long addressId = Long.parseLong(requestData.get("addressId"));
             String paymentMode = requestData.get("paymentMode"); // "CARD" or "COD"
@@ -107,15 +157,26 @@ public class PaymentRestController {
                 return ResponseEntity.badRequest().body(Map.of("error", "No items in cart to fulfill."));
             }
 
+            // Flash-sale products can only be ordered through an admitted checkout
+            Map<Long, Integer> quantities = CartService.getQuantities(cartItems);
+            if (!flashSaleService.hasPass(user.getId(), quantities.keySet())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error",
+                        "Your flash-sale checkout slot has expired. Please open the checkout again."));
+            }
+
             // 2. Fetch Shipping Address
             Address address = addressService.getAddressById(addressId)
                     .orElseThrow(() -> new IllegalArgumentException("Invalid Address ID."));
 
-            // 3. Fulfill Order via Service logic
+            // 3. Keep the stock held at checkout (or take it now if the hold has expired)
+            stockReservationService.commit(user.getId(), quantities);
+
+            // 4. Fulfill Order via Service logic
             orderService.fulfillOrder(user, cartItems, address, paymentMode, stripeIntentId);
 
-            // 4. Clear Cart
+            // 5. Clear Cart
             cartService.clearCart(user.getId());
+            flashSaleService.leave(user.getId(), quantities.keySet());
 
             String message = "COD".equalsIgnoreCase(paymentMode)
                     ? "Order placed successfully (Cash on Delivery)."
@@ -123,9 +184,29 @@ public class PaymentRestController {
 
             return ResponseEntity.ok(Map.of("message", message));
 
+        } catch (IllegalStateException e) {
+            // Not enough stock left
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Order fulfillment failed: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<Map<String, Object>> waitingRoomResponse(FlashSaleService.Admission admission) {
+        if (admission.isSoldOut()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", admission.getError()));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("retryAfterSeconds", admission.getRetryAfterSeconds());
+        if (admission.getError() != null) {
+            response.put("error", admission.getError());
+        } else {
+            response.put("queuePosition", admission.getQueuePosition());
+            response.put("message", "You are in the queue for the flash sale.");
+        }
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()))
+                .body(response);
+    }
+}
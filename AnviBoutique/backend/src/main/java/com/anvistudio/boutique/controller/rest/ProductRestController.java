@@ -1,14 +1,24 @@
 package com.anvistudio.boutique.controller.rest;
 
-import com.anvistudio.boutique.model.Product;
-import com.anvistudio.boutique.model.Review;
+import com.anvistudio.boutique.dto.CategoryDTO;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductDetailDTO;
+import com.anvistudio.boutique.dto.ProductFilterDTO;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.SuggestionDTO;
+import com.anvistudio.boutique.service.CatalogVersionService;
+import com.anvistudio.boutique.service.CategoryService;
+import com.anvistudio.boutique.service.ProductDetailService;
 import com.anvistudio.boutique.service.ProductService;
 import com.anvistudio.boutique.service.ReviewService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.HashMap;
 import java.util.List;
@@ -26,58 +36,157 @@ public class ProductRestController {
 
     private final ProductService productService;
     private final ReviewService reviewService;
+    private final CategoryService categoryService;
+    private final CatalogVersionService catalogVersionService;
+    private final ProductDetailService productDetailService;
 
-    public ProductRestController(ProductService productService, ReviewService reviewService) {
+    public ProductRestController(ProductService productService, ReviewService reviewService,
+                                 CategoryService categoryService, CatalogVersionService catalogVersionService,
+                                 ProductDetailService productDetailService) {
         this.productService = productService;
         this.reviewService = reviewService;
+        this.categoryService = categoryService;
+        this.catalogVersionService = catalogVersionService;
+        this.productDetailService = productDetailService;
     }
 
     /**
      * GET /api/products
-     * Returns a list of products, optionally filtered by category.
+     * Returns one page of products, filtered and sorted in the database.
+     * Pass the returned nextCursor back as cursor to fetch the next page by keyset seek.
+     * "facets" carries the sidebar counts for the same filter.
+     * Answers 304 Not Modified while the catalog version (ETag) is unchanged.
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> listProducts(
-            @RequestParam(value = "category", required = false) String category) {
+            WebRequest webRequest,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "sortBy", required = false) String sortBy,
+            @RequestParam(value = "minPrice", required = false) Double minPrice,
+            @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "color", required = false) String color,
+            @RequestParam(value = "keyword", required = false) String keyword,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "24") int size,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+
+        String etag = catalogVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        ProductFilterDTO filter = new ProductFilterDTO(category, sortBy, minPrice, maxPrice, status, color, keyword);
 
-        List<Product> products = productService.getProductsByCategoryOrAll(category);
+        ProductPageDTO<ProductCardDTO> productPage;
+        try {
+            productPage = productService.getFilteredProductPage(filter, page, size, cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("products", products);
+        response.put("products", productPage.getContent());
+        response.put("page", productPage.getPage());
+        response.put("size", productPage.getSize());
+        response.put("totalElements", productPage.getTotalElements());
+        response.put("totalPages", productPage.getTotalPages());
+        response.put("hasNext", productPage.isHasNext());
+        response.put("nextCursor", productPage.getNextCursor());
+        response.put("facets", productService.getFacetCounts(filter));
         response.put("selectedCategory", category != null ? category : "All");
-        response.put("categories", getAllCategories());
+        response.put("categories", categoryService.getCategoryNames());
 
-        return ResponseEntity.ok(response);
+        return revalidated(etag).body(response);
     }
 
     /**
      * GET /api/products/{id}
-     * Returns detailed information about a product, its reviews, and related products.
+     * Returns the product with its rating summary, newest approved reviews and related products in one response.
+     * Answers 304 Not Modified while neither the product, its reviews nor the related products changed.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getProductDetail(@PathVariable Long id) {
-        Product product = productService.getProductById(id)
-                .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
+    public ResponseEntity<ProductDetailDTO> getProductDetail(@PathVariable Long id, WebRequest webRequest) {
+        String etag = catalogVersionService.productETag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
 
-        List<Product> relatedProducts = productService.getRelatedProducts(product.getCategory(), id);
-        List<Review> approvedReviews = reviewService.getApprovedReviewsForProduct(id);
+        ProductDetailDTO detail = productDetailService.getProductDetail(id, etag)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("product", product);
-        response.put("relatedProducts", relatedProducts.subList(0, Math.min(relatedProducts.size(), 4)));
-        response.put("reviews", approvedReviews);
-        response.put("categories", getAllCategories());
+        return revalidated(etag).body(detail);
+    }
+
+    /**
+     * GET /api/products/{id}/reviews
+     * One page of approved reviews. sort: newest (default), helpful, highest, lowest.
+     * Pass the returned nextCursor back as cursor for the following page.
+     */
+    @GetMapping("/{id}/reviews")
+    public ResponseEntity<?> getReviews(
+            @PathVariable Long id,
+            WebRequest webRequest,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        String etag = catalogVersionService.productETag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        try {
+            return revalidated(etag).body(reviewService.getReviewPage(id, sort, size, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * POST /api/products/{id}/reviews/{reviewId}/helpful
+     * Marks an approved review as helpful (feeds the "most helpful" sort). A repeated vote gets 409 Conflict.
+     */
+    @PostMapping("/{id}/reviews/{reviewId}/helpful")
+    public ResponseEntity<Map<String, String>> markReviewHelpful(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @PathVariable("id") Long productId,
+            @PathVariable Long reviewId) {
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "You must be logged in to vote on reviews."));
+        }
+        try {
+            reviewService.markReviewHelpful(userDetails.getUsername(), productId, reviewId);
+            return ResponseEntity.ok(Map.of("message", "Thanks for your feedback!"));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
+    /**
+     * GET /api/products/search
+     * Full-text search served from the in-memory index, best match first.
+     */
     @GetMapping("/search")
-public ResponseEntity<List<Product>> searchProducts(@RequestParam String keyword) {
-    List<Product> results = productService.getFilteredProducts(
-        null, null, null, null, null, null, keyword
-    );
-    return ResponseEntity.ok(results);
-}
+    public ResponseEntity<List<ProductCardDTO>> searchProducts(@RequestParam String keyword, WebRequest webRequest) {
+        String etag = catalogVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidated(etag).body(productService.searchProducts(keyword));
+    }
+
+    /**
+     * GET /api/products/suggest
+     * Ranked completions (product names, categories, tags) for a partial or misspelled query.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(productService.suggest(query, limit));
+    }
 
 
     /**
@@ -113,18 +222,22 @@ public ResponseEntity<List<Product>> searchProducts(@RequestParam String keyword
     }
 
     /**
-     * Helper to retrieve all available categories for the frontend.
+     * GET /api/products/categories
+     * All categories with available products, their product counts and sale price range (cached registry).
      */
     @GetMapping("/categories")
-    public ResponseEntity<String[]> getCategories() {
-        return ResponseEntity.ok(getAllCategories());
+    public ResponseEntity<List<CategoryDTO>> getCategories(WebRequest webRequest) {
+        String etag = catalogVersionService.catalogETag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidated(etag).body(categoryService.getCategories());
     }
 
-    private String[] getAllCategories() {
-        return new String[]{
-                "Sarees", "Lehengas", "Kurtis", "Long Frocks", "Mom & Me", "Crop Top – Skirts",
-                "Handlooms", "Casual Frocks", "Ready To Wear", "Dupattas", "Kids wear",
-                "Dress Material", "Blouses", "Fabrics"
-        };
+    /**
+     * 200 response carrying the ETag; "no-cache" makes the browser revalidate with If-None-Match on every use.
+     */
+    private static ResponseEntity.BodyBuilder revalidated(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache());
     }
 }
\ No newline at end of file
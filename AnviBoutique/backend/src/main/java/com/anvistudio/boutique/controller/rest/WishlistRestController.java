@@ -1,7 +1,7 @@
 package com.anvistudio.boutique.controller.rest;
 
+import com.anvistudio.boutique.dto.WishlistItemDTO;
 import com.anvistudio.boutique.model.User;
-import com.anvistudio.boutique.model.Wishlist;
 import com.anvistudio.boutique.service.UserService;
 import com.anvistudio.boutique.service.WishlistService;
 import org.springframework.http.HttpStatus;
@@ -46,7 +46,7 @@ public class WishlistRestController {
                     .orElseThrow(() -> new RuntimeException("Authenticated user not found in DB."));
 
             // List<Wishlist> wishlistItems = wishlistService.getWishlistByUserId(user.getId());
-            List<Wishlist> wishlistItems = wishlistService.getWishlistItems(user.getId());
+            List<WishlistItemDTO> wishlistItems = wishlistService.getWishlistItems(user.getId());
             return ResponseEntity.ok(wishlistItems);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,19 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * A sale-event pricing change: either one discount for a whole category
+ * ({@code category} + {@code discountPercent}) or individual product id -> discount pairs ({@code discounts}).
+ */
+@Data
+@NoArgsConstructor
+public class BulkPricingRequestDTO {
+
+    private String category;
+    private Integer discountPercent;
+    private Map<Long, Integer> discounts;
+}
@@ -0,0 +1,17 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk pricing change: rows updated and how many of them newly went on sale (and were announced).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPricingResultDTO {
+
+    private int updated;
+    private int newlyOnSale;
+}
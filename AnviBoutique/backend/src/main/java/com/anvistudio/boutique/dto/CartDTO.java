@@ -0,0 +1,64 @@
+package com.anvistudio.boutique.dto;
+
+import com.anvistudio.boutique.model.CartItem;
+import com.anvistudio.boutique.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A user's cart as returned to the client. Line totals and the grand total are computed
+ * in one pass over items loaded together with their products.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDTO {
+
+    private List<CartLineDTO> items;
+    private BigDecimal total;
+    private int itemCount;
+
+    @JsonIgnore
+    private long totalPaise;
+
+    /**
+     * Builds the cart from items fetched with their products (see CartItemRepository#findWithProductByUserId).
+     */
+    public static CartDTO of(List<CartItem> cartItems) {
+        List<CartLineDTO> lines = new ArrayList<>(cartItems.size());
+        long totalPaise = 0;
+        int itemCount = 0;
+        for (CartItem item : cartItems) {
+            long lineTotalPaise = item.getTotalPricePaise();
+            lines.add(CartLineDTO.of(item, lineTotalPaise));
+            totalPaise = Math.addExact(totalPaise, lineTotalPaise);
+            itemCount += item.getQuantity();
+        }
+        return new CartDTO(lines, Money.toRupees(totalPaise), itemCount, totalPaise);
+    }
+
+    /**
+     * Quantity per product id.
+     */
+    @JsonIgnore
+    public Map<Long, Integer> getQuantities() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartLineDTO line : items) {
+            quantities.put(line.getId(), line.getQuantity());
+        }
+        return quantities;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -0,0 +1,50 @@
+package com.anvistudio.boutique.dto;
+
+import com.anvistudio.boutique.model.CartItem;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.util.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One cart line as returned to the client: the product fields the cart page shows plus the
+ * discounted unit price and line total, so the entity's lazy user/product proxies are never serialized.
+ * A product is in a cart at most once, so the product id doubles as the line id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLineDTO {
+
+    private Long id;
+    private String name;
+    private String category;
+    private String imageUrl;
+    private BigDecimal price;
+    private Integer discountPercent;
+    private BigDecimal unitPrice;
+    private int quantity;
+    private BigDecimal lineTotal;
+    private int stockQuantity;
+
+    /**
+     * Builds the line from a cart item whose product is already loaded.
+     */
+    public static CartLineDTO of(CartItem item, long lineTotalPaise) {
+        Product product = item.getProduct();
+        return new CartLineDTO(
+                product.getId(),
+                product.getName(),
+                product.getCategory(),
+                product.getImageUrl(),
+                product.getPrice(),
+                product.getDiscountPercent(),
+                Money.toRupees(product.getDiscountedPricePaise()),
+                item.getQuantity(),
+                Money.toRupees(lineTotalPaise),
+                product.getStockQuantity() != null ? product.getStockQuantity() : 0);
+    }
+}
@@ -0,0 +1,22 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A category as shown in navigation and filters: the number of available products in it
+ * and their lowest/highest sale price.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryDTO {
+
+    private String name;
+    private long productCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+}
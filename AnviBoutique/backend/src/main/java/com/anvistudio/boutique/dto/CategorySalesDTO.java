@@ -0,0 +1,20 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Units and revenue of one category over a set of orders.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategorySalesDTO {
+
+    private String category;
+    private long units;
+    private BigDecimal revenue;
+}
@@ -0,0 +1,21 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Units and revenue of all orders placed on one day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySalesDTO {
+
+    private Date date;
+    private long units;
+    private BigDecimal revenue;
+}
@@ -0,0 +1,24 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Product counts per filter value for the shop sidebar, e.g. categories {"Sarees": 132}.
+ * Each facet is counted with every other active filter applied but not its own,
+ * so the counts show what the shopper would get by switching to that value.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCountsDTO {
+
+    private Map<String, Integer> categories = new LinkedHashMap<>();
+    private Map<String, Integer> colors = new LinkedHashMap<>();
+    private Map<String, Integer> priceRanges = new LinkedHashMap<>();
+    private Map<String, Integer> statuses = new LinkedHashMap<>();
+}
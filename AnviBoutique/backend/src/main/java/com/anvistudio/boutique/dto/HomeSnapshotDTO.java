@@ -0,0 +1,21 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Precomputed landing page content. {@code version} increases every time the catalog changes
+ * and the snapshot is regenerated.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HomeSnapshotDTO {
+
+    private long version;
+    private List<ProductCardDTO> newArrivals;
+    private List<ProductCardDTO> saleItems;
+}
@@ -0,0 +1,70 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Pattern;
+
+/**
+ * Opaque keyset (seek) pagination cursor: the sort order it was issued for, and the sort key value and id of the
+ * last row of a page. Encoded as URL-safe Base64 so clients can pass it back verbatim as a query parameter.
+ *
+ * Sort key values are numbers (prices, ratings, counts, epoch milliseconds); {@link #decode(String, String)}
+ * checks that, and that the cursor is used with the sort order it came from, before any query sees it.
+ */
+@Data
+@AllArgsConstructor
+public class PageCursor {
+
+    private static final String SEPARATOR = "|";
+    // Plain decimal, no exponent
+    private static final Pattern NUMBER = Pattern.compile("-?\\d{1,19}(\\.\\d{1,10})?");
+
+    // The sort order the cursor was issued for (e.g. "PRICE_ASC")
+    private String sort;
+    private String value;
+    private Long id;
+
+    /**
+     * The sort key value as a number; {@link #decode(String, String)} has checked that it is one.
+     */
+    public BigDecimal numericValue() {
+        return new BigDecimal(value);
+    }
+
+    public String encode() {
+        String raw = sort + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor previously produced by {@link #encode()} for the given sort order.
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort order.
+     */
+    public static PageCursor decode(String token, String sort) {
+        PageCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idSplit = raw.lastIndexOf(SEPARATOR);
+            int valueSplit = idSplit > 0 ? raw.lastIndexOf(SEPARATOR, idSplit - 1) : -1;
+            if (valueSplit < 0) {
+                throw new IllegalArgumentException("Invalid page cursor.");
+            }
+            cursor = new PageCursor(raw.substring(0, valueSplit), raw.substring(valueSplit + 1, idSplit),
+                    Long.parseLong(raw.substring(idSplit + 1)));
+            if (!NUMBER.matcher(cursor.value).matches()) {
+                throw new IllegalArgumentException("Invalid page cursor.");
+            }
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException and Base64 decoding errors
+            throw new IllegalArgumentException("Invalid page cursor.");
+        }
+        if (!cursor.sort.equals(sort)) {
+            throw new IllegalArgumentException("The page cursor belongs to another sort order; start again from the first page.");
+        }
+        return cursor;
+    }
+}
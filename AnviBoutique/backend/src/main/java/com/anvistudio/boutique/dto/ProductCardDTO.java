@@ -0,0 +1,84 @@
+package com.anvistudio.boutique.dto;
+
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.model.RatingStats;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * The fields a product tile needs (grid, carousel, home page), without the large TEXT columns
+ * (description, delivery/return policy, additional information) of the full {@link Product}.
+ *
+ * The constructor matches the "SELECT new ...ProductCardDTO(...)" projections in ProductRepository,
+ * so list queries only read these columns.
+ */
+@Data
+@NoArgsConstructor
+public class ProductCardDTO {
+
+    /** JPQL select list for the projection constructor, for entity alias "p". */
+    public static final String SELECT = "new com.anvistudio.boutique.dto.ProductCardDTO("
+            + "p.id, p.name, p.category, p.price, p.discountPercent, p.salePrice, "
+            + "p.imageUrl, p.productColor, p.stockQuantity, p.dateCreated, "
+            + "p.ratingStats.averageRating, p.ratingStats.ratingCount)";
+
+    private Long id;
+    private String name;
+    private String category;
+    private BigDecimal price;
+    private Integer discountPercent;
+    private BigDecimal salePrice;
+    private String imageUrl;
+    private String productColor;
+    private boolean inStock;
+    private Date dateCreated;
+    private BigDecimal averageRating;
+    private int ratingCount;
+
+    public ProductCardDTO(Long id, String name, String category, BigDecimal price, Integer discountPercent,
+                          BigDecimal salePrice, String imageUrl, String productColor, Integer stockQuantity,
+                          Date dateCreated, BigDecimal averageRating, Integer ratingCount) {
+        this.id = id;
+        this.name = name;
+        this.category = category;
+        this.price = price;
+        this.discountPercent = discountPercent;
+        this.salePrice = salePrice;
+        this.imageUrl = imageUrl;
+        this.productColor = productColor;
+        this.inStock = stockQuantity != null && stockQuantity > 0;
+        this.dateCreated = dateCreated;
+        this.averageRating = averageRating != null ? averageRating : BigDecimal.ZERO;
+        this.ratingCount = ratingCount != null ? ratingCount : 0;
+    }
+
+    /**
+     * A copy with another in-stock flag, for caches whose cards may be serialized concurrently.
+     */
+    public ProductCardDTO withInStock(boolean inStock) {
+        ProductCardDTO copy = new ProductCardDTO(id, name, category, price, discountPercent, salePrice, imageUrl,
+                productColor, null, dateCreated, averageRating, ratingCount);
+        copy.setInStock(inStock);
+        return copy;
+    }
+
+    public static ProductCardDTO from(Product product) {
+        RatingStats rating = product.getRatingStats() != null ? product.getRatingStats() : new RatingStats();
+        return new ProductCardDTO(
+                product.getId(),
+                product.getName(),
+                product.getCategory(),
+                product.getPrice(),
+                product.getDiscountPercent(),
+                product.getSalePrice() != null ? product.getSalePrice() : product.getDiscountedPrice(),
+                product.getImageUrl(),
+                product.getProductColor(),
+                product.getStockQuantity(),
+                product.getDateCreated(),
+                rating.getAverageRating(),
+                rating.getRatingCount());
+    }
+}
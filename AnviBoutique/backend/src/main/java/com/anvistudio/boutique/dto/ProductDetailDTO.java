@@ -0,0 +1,26 @@
+package com.anvistudio.boutique.dto;
+
+import com.anvistudio.boutique.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Everything the product page shows, assembled in one call: the product, its rating summary,
+ * the first page of newest approved reviews and the related product cards.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductDetailDTO {
+
+    private Product product;
+    private double averageRating;
+    private long reviewCount;
+    private List<ReviewDTO> reviews;
+    // Cursor for /api/products/{id}/reviews to continue after the embedded reviews (null if there are no more)
+    private String reviewsNextCursor;
+    private List<ProductCardDTO> relatedProducts;
+}
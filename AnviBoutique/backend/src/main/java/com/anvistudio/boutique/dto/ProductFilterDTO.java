@@ -0,0 +1,46 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Filter and sort options of the shop page, passed from the controller down to the product query.
+ * Every field is optional; null or blank values mean "no restriction".
+ */
+@Data
+@NoArgsConstructor
+public class ProductFilterDTO {
+
+    private String category;
+
+    // "latest" (default), "oldest", "priceAsc" or "priceDesc"
+    private String sortBy;
+
+    // Bounds on the discounted (sale) price
+    private Double minPrice;
+    private Double maxPrice;
+
+    // "inStock", "lowStock", "onSale" or "clearance"
+    private String status;
+
+    private String color;
+
+    // When present, the keyword search takes precedence over the category
+    private String keyword;
+
+    // Set by ProductService from the search index for keyword queries: restricts results to these ids
+    private Collection<Long> productIds;
+
+    public ProductFilterDTO(String category, String sortBy, Double minPrice, Double maxPrice,
+                            String status, String color, String keyword) {
+        this.category = category;
+        this.sortBy = sortBy;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.status = status;
+        this.color = color;
+        this.keyword = keyword;
+    }
+}
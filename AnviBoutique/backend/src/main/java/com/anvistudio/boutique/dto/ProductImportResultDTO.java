@@ -0,0 +1,21 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product import. {@code errors} lists the first problems found, one per skipped record.
+ */
+@Data
+@NoArgsConstructor
+public class ProductImportResultDTO {
+
+    private int processed;
+    private int created;
+    private int updated;
+    private int skipped;
+    private List<String> errors = new ArrayList<>();
+}
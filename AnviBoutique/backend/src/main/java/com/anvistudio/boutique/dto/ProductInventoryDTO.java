@@ -0,0 +1,33 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of the admin inventory table: the card fields plus SKU, exact stock and availability.
+ * Built by a constructor projection in ProductRepository, so TEXT columns are never read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductInventoryDTO {
+
+    /** JPQL select list for the projection constructor, for entity alias "p". */
+    public static final String SELECT = "new com.anvistudio.boutique.dto.ProductInventoryDTO("
+            + "p.id, p.name, p.sku, p.category, p.price, p.discountPercent, p.salePrice, "
+            + "p.imageUrl, p.stockQuantity, p.isAvailable)";
+
+    private Long id;
+    private String name;
+    private String sku;
+    private String category;
+    private BigDecimal price;
+    private Integer discountPercent;
+    private BigDecimal salePrice;
+    private String imageUrl;
+    private Integer stockQuantity;
+    private Boolean isAvailable;
+}
@@ -0,0 +1,30 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a filtered product listing together with the totals for the whole filter.
+ * {@code nextCursor} can be sent back as {@code cursor} to fetch the following page by keyset seek.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageDTO<T> {
+
+    private List<T> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public static <T> ProductPageDTO<T> of(List<T> content, int page, int size, long totalElements, String nextCursor) {
+        int totalPages = size > 0 ? (int) ((totalElements + size - 1) / size) : 0;
+        return new ProductPageDTO<>(content, page, size, totalElements, totalPages, nextCursor != null, nextCursor);
+    }
+}
@@ -0,0 +1,23 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Units and revenue of one product over a set of orders (top sellers, returns per SKU).
+ * Name and SKU are the ones it was last sold under.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSalesDTO {
+
+    private Long productId;
+    private String productName;
+    private String sku;
+    private long units;
+    private BigDecimal revenue;
+}
@@ -0,0 +1,24 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * An approved review as shown on the product page, without the {@link com.anvistudio.boutique.model.User}
+ * and {@link com.anvistudio.boutique.model.Product} entities behind it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewDTO {
+
+    private Long id;
+    private Integer rating;
+    private String comment;
+    private Date datePosted;
+    private Integer helpfulCount;
+    private String username;
+}
@@ -0,0 +1,22 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Admin sales report for the orders placed since {@code from}. Cancelled and returned orders do not count as sales.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesReportDTO {
+
+    private Date from;
+    private List<ProductSalesDTO> topSellers;
+    private List<ProductSalesDTO> mostReturned;
+    private List<CategorySalesDTO> revenueByCategory;
+}
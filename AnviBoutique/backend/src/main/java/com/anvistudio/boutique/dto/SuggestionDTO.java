@@ -0,0 +1,24 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One autocomplete completion: a product name, category or tag, with the number of available products behind it.
+ * {@code productId} is only set for product name suggestions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+
+    public static final String TYPE_PRODUCT = "PRODUCT";
+    public static final String TYPE_CATEGORY = "CATEGORY";
+    public static final String TYPE_TAG = "TAG";
+
+    private String text;
+    private String type;
+    private Long productId;
+    private int productCount;
+}
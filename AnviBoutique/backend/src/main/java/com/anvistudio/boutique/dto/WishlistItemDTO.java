@@ -0,0 +1,22 @@
+package com.anvistudio.boutique.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A wishlist entry as returned to the client. A product is in a user's wishlist at most once,
+ * so the product id doubles as the item id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WishlistItemDTO {
+
+    private Long id;
+    private ProductCardDTO product;
+
+    public static WishlistItemDTO of(ProductCardDTO product) {
+        return new WishlistItemDTO(product.getId(), product);
+    }
+}
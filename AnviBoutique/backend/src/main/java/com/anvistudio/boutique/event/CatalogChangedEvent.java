@@ -0,0 +1,37 @@
+package com.anvistudio.boutique.event;
+
+import com.anvistudio.boutique.model.Product;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ProductService whenever the catalog changes, so in-memory indexes and caches
+ * can update themselves once the transaction has committed.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class CatalogChangedEvent {
+
+    public enum Type {
+        SAVED,       // A single product was created or updated
+        DELETED,     // A single product was removed
+        BULK_UPDATED // Many products changed at once; listeners should reload
+    }
+
+    private final Type type;
+    private final Long productId;
+    private final Product product; // Only set for SAVED
+
+    public static CatalogChangedEvent saved(Product product) {
+        return new CatalogChangedEvent(Type.SAVED, product.getId(), product);
+    }
+
+    public static CatalogChangedEvent deleted(Long productId) {
+        return new CatalogChangedEvent(Type.DELETED, productId, null);
+    }
+
+    public static CatalogChangedEvent bulkUpdated() {
+        return new CatalogChangedEvent(Type.BULK_UPDATED, null, null);
+    }
+}
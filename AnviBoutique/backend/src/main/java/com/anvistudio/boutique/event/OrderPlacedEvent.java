@@ -0,0 +1,26 @@
+package com.anvistudio.boutique.event;
+
+import com.anvistudio.boutique.model.OrderItem;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Published by OrderService when an order is placed. Listeners run after the order has committed,
+ * on the order event executor, so side effects (emails, stock alerts, sales rollups) add no latency
+ * to checkout. The event carries everything they need, so they do not have to load the order again.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPlacedEvent {
+
+    private final Long orderId;
+    private final Long userId;
+    private final String customerEmail;
+    private final Date orderDate;
+    private final BigDecimal totalAmount;
+    private final List<OrderItem> items; // Detached copies of the order lines
+}
@@ -0,0 +1,15 @@
+package com.anvistudio.boutique.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ReviewService when a product's visible reviews may have changed
+ * (review submitted, updated, approved or deleted).
+ */
+@Getter
+@AllArgsConstructor
+public class ProductReviewsChangedEvent {
+
+    private final Long productId;
+}
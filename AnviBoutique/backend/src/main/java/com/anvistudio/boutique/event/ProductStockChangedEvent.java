@@ -0,0 +1,23 @@
+package com.anvistudio.boutique.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Published by StockReservationService when checkouts reserve or release stock, so product pages
+ * showing the stock are no longer answered from caches and in-memory indexes can patch the products' stock.
+ */
+@Getter
+@AllArgsConstructor
+public class ProductStockChangedEvent {
+
+    // productId -> change of stock_quantity (negative when units were taken)
+    private final Map<Long, Integer> stockChanges;
+
+    public Collection<Long> getProductIds() {
+        return stockChanges.keySet();
+    }
+}
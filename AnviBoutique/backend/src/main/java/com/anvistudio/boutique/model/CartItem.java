@@ -1,16 +1,23 @@
 package com.anvistudio.boutique.model;
 
+import com.anvistudio.boutique.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
 import java.util.Date;
 
 /**
  * Entity representing one item added to a user's shopping cart.
+ * A product appears at most once per cart; adding it again increases the quantity
+ * (see CartItemRepository#upsertQuantity).
  */
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_items_user_product", columnNames = {"user_id", "product_id"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -41,8 +48,15 @@ public class CartItem {
      * Helper method to calculate the total price for this item.
      * CRITICAL FIX: Uses the discounted price from the Product entity.
      */
-    public double getTotalPrice() {
-        // Use doubleValue() for arithmetic, relying on Product to handle BigDecimal precision.
-        return this.product.getDiscountedPrice().doubleValue() * this.quantity;
+    public BigDecimal getTotalPrice() {
+        return Money.toRupees(getTotalPricePaise());
+    }
+
+    /**
+     * Line total in paise (see {@link Money}); exact, used to sum cart and order totals.
+     */
+    @JsonIgnore
+    public long getTotalPricePaise() {
+        return Money.times(this.product.getDiscountedPricePaise(), this.quantity);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.Date;
+
+/**
+ * Entity representing one item in the cart of a visitor who has not logged in yet.
+ * The cart is identified by an anonymous token kept in a cookie and is merged into
+ * the user's cart on login (see CartService#mergeGuestCart).
+ */
+@Entity
+@Table(name = "guest_cart_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_guest_cart_items_token_product", columnNames = {"guest_token", "product_id"})
+}, indexes = {
+        // Purge of abandoned carts: last activity per token
+        @Index(name = "idx_guest_cart_items_token_activity", columnList = "guest_token, lastActivity")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuestCartItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "guest_token", nullable = false, length = 36)
+    private String guestToken;
+
+    // Links to the Product being purchased
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date dateAdded = new Date();
+
+    // Last time the guest added to or changed this line; the cart is abandoned once all its lines are inactive
+    @ColumnDefault("CURRENT_TIMESTAMP")
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastActivity = new Date();
+}
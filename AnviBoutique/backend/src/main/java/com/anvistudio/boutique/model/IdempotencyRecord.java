@@ -0,0 +1,71 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Date;
+
+/**
+ * The result of a mutating request sent with an Idempotency-Key, so that a retry with the same key
+ * returns it instead of running the request again. While the first request runs the record is
+ * IN_PROGRESS (a claim that expires after a short lock time); once it succeeds the response is stored
+ * (COMPLETED) in the same transaction as the work itself and kept until expiresAt.
+ */
+@Entity
+@Table(name = "idempotency_records", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_idempotency_records_scope_user_key", columnNames = {"scope", "userId", "idempotencyKey"})
+}, indexes = {
+        @Index(name = "idx_idempotency_records_expires", columnList = "expiresAt")
+})
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    public enum Status {
+        IN_PROGRESS, COMPLETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The endpoint, e.g. "payment.finalize"
+    @Column(nullable = false, length = 32)
+    private String scope;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 100)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body: the same key may not be reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    private Integer responseStatus;
+
+    @Column(columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt = new Date();
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    public IdempotencyRecord(String scope, Long userId, String idempotencyKey, String requestHash, Date expiresAt) {
+        this.scope = scope;
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.status = Status.IN_PROGRESS;
+        this.expiresAt = expiresAt;
+    }
+}
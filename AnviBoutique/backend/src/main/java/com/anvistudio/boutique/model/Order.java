@@ -2,8 +2,11 @@ package com.anvistudio.boutique.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -11,7 +14,10 @@ import java.util.List;
  * Entity representing a customer's confirmed order.
  */
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Sales reporting: orders in a status over a period (joined from order_items)
+        @Index(name = "idx_orders_status_order_date", columnList = "status, orderDate")
+})
 @Data
 @NoArgsConstructor
 public class Order {
@@ -43,7 +49,15 @@ public class Order {
     @Column(columnDefinition = "TEXT")
     private String shippingAddressSnapshot;
 
-    // Details of items included (simplified: would typically be a separate OrderItem entity)
-    @Column(columnDefinition = "TEXT")
-    private String orderItemsSnapshot;
+    // Lines of the order as sold; written in one JDBC batch by OrderService
+    @OneToMany(mappedBy = "order")
+    @OrderBy("id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<OrderItem> items = new ArrayList<>();
+
+    // Lines of orders placed before order_items existed, as the old text snapshot. Copied into order_items on
+    // startup (LegacyOrderItemsMigration); shown instead of the lines for text that could not be parsed
+    @Column(name = "order_items_snapshot", columnDefinition = "TEXT", insertable = false, updatable = false)
+    private String legacyItemsSnapshot;
 }
\ No newline at end of file
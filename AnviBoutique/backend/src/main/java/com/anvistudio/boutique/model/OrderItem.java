@@ -0,0 +1,87 @@
+package com.anvistudio.boutique.model;
+
+import com.anvistudio.boutique.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import java.math.BigDecimal;
+
+/**
+ * One line of an order, with the product as it was sold: name, SKU, category, list price and discount
+ * are copied at purchase time, so later catalog edits (or deleting the product) do not change order history.
+ * productId is therefore a plain column, not a foreign key.
+ *
+ * Sales reporting is a plain aggregate over this table (see OrderItemRepository), joined to orders for
+ * the status and date.
+ */
+@Entity
+@Table(name = "order_items", indexes = {
+        // Lines of an order
+        @Index(name = "idx_order_items_order", columnList = "order_id"),
+        // Top sellers / returns per product: group by product, join the order for its status
+        @Index(name = "idx_order_items_product_order", columnList = "productId, order_id"),
+        // Revenue per category
+        @Index(name = "idx_order_items_category_order", columnList = "category, order_id")
+})
+@Data
+@NoArgsConstructor
+public class OrderItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private String productName;
+
+    private String sku;
+
+    private String category;
+
+    private String imageUrl;
+
+    // List price of one unit at purchase time
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false)
+    private Integer discountPercent;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    // quantity x discounted unit price, exact to the paisa (see Money)
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal lineTotal;
+
+    /**
+     * The cart line as sold now.
+     */
+    public static OrderItem of(CartItem cartItem) {
+        Product product = cartItem.getProduct();
+        OrderItem item = new OrderItem();
+        item.setProductId(product.getId());
+        item.setProductName(product.getName());
+        item.setSku(product.getSku());
+        item.setCategory(product.getCategory());
+        item.setImageUrl(product.getImageUrl());
+        item.setUnitPrice(product.getPrice());
+        item.setDiscountPercent(product.getDiscountPercent() != null ? product.getDiscountPercent() : 0);
+        item.setQuantity(cartItem.getQuantity());
+        item.setLineTotal(Money.toRupees(cartItem.getTotalPricePaise()));
+        return item;
+    }
+}
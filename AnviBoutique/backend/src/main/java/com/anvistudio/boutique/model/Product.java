@@ -1,5 +1,8 @@
 package com.anvistudio.boutique.model;
 
+import com.anvistudio.boutique.util.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,7 +11,18 @@ import java.math.BigDecimal;
 import java.util.Date;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // Shop page: category + availability filter with price range / price sort served by one range scan
+        @Index(name = "idx_products_category_available_sale_price", columnList = "category, isAvailable, salePrice"),
+        // Price range / price sort across all categories
+        @Index(name = "idx_products_available_sale_price", columnList = "isAvailable, salePrice"),
+        // Latest / oldest sort
+        @Index(name = "idx_products_available_date_created", columnList = "isAvailable, dateCreated"),
+        // Top rated sort
+        @Index(name = "idx_products_available_average_rating", columnList = "isAvailable, averageRating"),
+        // Flash-sale products are looked up every second by FlashSaleService
+        @Index(name = "idx_products_flash_sale", columnList = "flashSale")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,18 +56,34 @@ public class Product {
         if (discountPercent == null || discountPercent <= 0 || price == null) {
             return price;
         }
+        return Money.toRupees(getDiscountedPricePaise());
+    }
 
-        // Calculate discounted price: price * (1 - discountPercent / 100)
-        BigDecimal discountFactor = BigDecimal.ONE.subtract(
-                BigDecimal.valueOf(discountPercent)
-                        .divide(BigDecimal.valueOf(100), 2, BigDecimal.ROUND_HALF_UP)
-        );
-
-        // Use setScale to ensure consistent rounding for currency
-        return price.multiply(discountFactor).setScale(2, BigDecimal.ROUND_HALF_UP);
+    /**
+     * The discounted unit price in paise (see {@link Money}), for cart, order and payment totals.
+     */
+    @JsonIgnore
+    public long getDiscountedPricePaise() {
+        if (price == null) {
+            return 0;
+        }
+        return Money.applyDiscount(Money.toPaise(price), discountPercent != null ? discountPercent : 0);
     }
     // ****************************************
 
+    /**
+     * Effective sale price (price after discount), stored so the database can filter, sort and index on it.
+     * Kept in sync with price and discountPercent via {@link #refreshSalePrice()} whenever the product is saved.
+     */
+    private BigDecimal salePrice;
+
+    /**
+     * Recomputes the persisted sale price from the current price and discount.
+     */
+    public void refreshSalePrice() {
+        this.salePrice = getDiscountedPrice();
+    }
+
     /**
      * NEW: Determines if the product is a Clearance Sale item (50% discount or more).
      */
@@ -71,9 +101,16 @@ public class Product {
     private String productColor;
     // ***********************
 
-    @Column(nullable = false)
+    // Stock that can still be sold: units held by open checkouts are already taken out of it (StockReservationService).
+    // Only changed by atomic increments/decrements in ProductRepository, never written back when the entity is saved
+    @Column(nullable = false, updatable = false)
     private Integer stockQuantity;
 
+    // The stockQuantity the admin form was loaded with; saveProduct applies the difference to the stored stock
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private Integer previousStockQuantity;
+
     // Existing: Date Created
     @Column(nullable = false, updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
@@ -113,4 +150,12 @@ public class Product {
     @Column(nullable = false)
     private Boolean isAvailable = true; // Default: visible
 
+    // 11. Flash-sale mode: checkouts go through the FlashSaleService waiting room (switched by its own admin endpoint)
+    @Column(nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private Boolean flashSale = false;
+
+    // 10. Rating summary of the approved reviews (maintained by ReviewService, read-only here)
+    @Embedded
+    private RatingStats ratingStats = new RatingStats();
+
 }
\ No newline at end of file
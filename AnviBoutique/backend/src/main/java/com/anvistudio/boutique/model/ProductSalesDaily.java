@@ -0,0 +1,50 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Units and revenue of a product per day of ordering, kept up to date from OrderPlacedEvent,
+ * so daily sales charts read a few rows per day instead of aggregating every order line.
+ * Lines of orders that are cancelled or returned are subtracted again (OrderService#updateStatus),
+ * so the rollup counts the same orders as the sales report.
+ */
+@Entity
+@Table(name = "product_sales_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_product_sales_daily_date_product", columnNames = {"saleDate", "productId"})
+})
+@Data
+@NoArgsConstructor
+public class ProductSalesDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.DATE)
+    private Date saleDate;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    private String category;
+
+    @Column(nullable = false)
+    private Long units;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue;
+
+    /**
+     * The day an order placed at the given time is counted on (server time zone).
+     */
+    public static Date saleDateOf(Date orderDate) {
+        return java.sql.Date.valueOf(LocalDate.ofInstant(orderDate.toInstant(), ZoneId.systemDefault()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+
+/**
+ * Rating summary of a product's approved reviews, stored on the product row so listings can show
+ * stars (and sort by rating) without aggregating product_reviews.
+ *
+ * The columns are never written through the entity: ReviewService keeps them up to date with
+ * atomic increments when a review is approved, un-approved or deleted, and reconciles them at startup.
+ * The database defaults let rows inserted outside JPA (e.g. the bulk import) start at zero.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+public class RatingStats {
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer ratingCount = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Long ratingSum = 0L;
+
+    /** ratingSum / ratingCount, rounded to 2 decimals; stored so that listings can sort on it. */
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false, precision = 3, scale = 2)
+    private BigDecimal averageRating = BigDecimal.ZERO;
+
+    // Star histogram
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer oneStarCount = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer twoStarCount = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer threeStarCount = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer fourStarCount = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Integer fiveStarCount = 0;
+
+    /**
+     * Review counts per star, index 0 = 1 star.
+     */
+    public int[] getHistogram() {
+        return new int[]{oneStarCount, twoStarCount, threeStarCount, fourStarCount, fiveStarCount};
+    }
+}
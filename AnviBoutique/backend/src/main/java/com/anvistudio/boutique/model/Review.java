@@ -4,13 +4,21 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.util.Date;
 
 /**
  * Entity representing a customer's review and rating for a specific product.
  */
 @Entity
-@Table(name = "product_reviews")
+@Table(name = "product_reviews", indexes = {
+        // Review listing of a product, newest first, paged by (datePosted, id) keyset
+        @Index(name = "idx_reviews_product_approved_date", columnList = "product_id, isApproved, datePosted, id"),
+        // "Most helpful" and rating sorts
+        @Index(name = "idx_reviews_product_approved_helpful", columnList = "product_id, isApproved, helpfulCount, id"),
+        @Index(name = "idx_reviews_product_approved_rating", columnList = "product_id, isApproved, rating, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,4 +53,9 @@ public class Review {
     // Field to determine if the review has been approved by an admin
     @Column(nullable = false)
     private Boolean isApproved = false;
+
+    // Number of customers who marked the review as helpful (incremented in place by ReviewRepository)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Integer helpfulCount = 0;
 }
\ No newline at end of file
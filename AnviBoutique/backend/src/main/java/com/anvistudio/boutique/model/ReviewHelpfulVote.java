@@ -0,0 +1,33 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Date;
+
+/**
+ * A customer's "helpful" vote on a review. The unique key allows one vote per customer and review,
+ * so {@link Review#getHelpfulCount()} is only incremented for the first one.
+ */
+@Entity
+@Table(name = "review_helpful_votes", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_review_helpful_votes_review_user", columnNames = {"review_id", "user_id"})
+})
+@Data
+@NoArgsConstructor
+public class ReviewHelpfulVote {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "review_id", nullable = false)
+    private Long reviewId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date dateVoted = new Date();
+}
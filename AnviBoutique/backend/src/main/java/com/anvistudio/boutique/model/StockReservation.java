@@ -0,0 +1,57 @@
+package com.anvistudio.boutique.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Date;
+
+/**
+ * Stock of one product held for a user's checkout. The quantity has already been taken out of
+ * {@link Product#getStockQuantity()}; it is kept when the order is placed (COMMITTED) and put back
+ * when the hold expires or the checkout is restarted (RELEASED).
+ */
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "idx_stock_reservations_user_status", columnList = "userId, status"),
+        @Index(name = "idx_stock_reservations_status_expires", columnList = "status, expiresAt")
+})
+@Data
+@NoArgsConstructor
+public class StockReservation {
+
+    public enum Status {
+        HELD, COMMITTED, RELEASED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.HELD;
+
+    @Column(nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt = new Date();
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    public StockReservation(Long userId, Long productId, int quantity, Date expiresAt) {
+        this.userId = userId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+}
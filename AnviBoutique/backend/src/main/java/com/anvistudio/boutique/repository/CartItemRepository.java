@@ -3,6 +3,8 @@ package com.anvistudio.boutique.repository;
 import com.anvistudio.boutique.model.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying; // NEW
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional; // NEW
 import java.util.List;
 import java.util.Optional;
@@ -14,11 +16,39 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
      */
     List<CartItem> findByUserId(Long userId);
 
+    /**
+     * A user's cart items with their products in a single fetch-join query, oldest first,
+     * so computing line totals does not load each product separately.
+     */
+    @Query("SELECT c FROM CartItem c JOIN FETCH c.product WHERE c.user.id = :userId ORDER BY c.dateAdded, c.id")
+    List<CartItem> findWithProductByUserId(@Param("userId") Long userId);
+
     /**
      * Finds a specific item in the cart by user ID and product ID.
      */
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
 
+    /**
+     * Adds the quantity to the user's line for the product, inserting the line if there is none,
+     * in one statement. Relies on the unique (user_id, product_id) constraint, so concurrent adds
+     * cannot create duplicate lines. Fails with a foreign key violation if the product does not exist.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cart_items (user_id, product_id, quantity, date_added) "
+            + "VALUES (:userId, :productId, :quantity, CURRENT_TIMESTAMP) "
+            + "ON DUPLICATE KEY UPDATE quantity = quantity + :quantity", nativeQuery = true)
+    int upsertQuantity(@Param("userId") Long userId, @Param("productId") Long productId, @Param("quantity") int quantity);
+
+    /**
+     * Moves a guest cart into the user's cart in one statement: new products are inserted,
+     * products already in the cart get the guest quantity added. The guest rows are left for the caller to delete.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cart_items (user_id, product_id, quantity, date_added) "
+            + "SELECT :userId, g.product_id, g.quantity, g.date_added FROM guest_cart_items g WHERE g.guest_token = :token "
+            + "ON DUPLICATE KEY UPDATE quantity = cart_items.quantity + VALUES(quantity)", nativeQuery = true)
+    int mergeGuestCart(@Param("userId") Long userId, @Param("token") String token);
+
     /**
      * Deletes all items in a user's cart.
      */
@@ -0,0 +1,56 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.GuestCartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface GuestCartItemRepository extends JpaRepository<GuestCartItem, Long> {
+
+    /**
+     * A guest cart's items with their products in a single fetch-join query, oldest first.
+     */
+    @Query("SELECT g FROM GuestCartItem g JOIN FETCH g.product WHERE g.guestToken = :token ORDER BY g.dateAdded, g.id")
+    List<GuestCartItem> findWithProductByGuestToken(@Param("token") String token);
+
+    Optional<GuestCartItem> findByGuestTokenAndProductId(String guestToken, Long productId);
+
+    /**
+     * Adds the quantity to the guest cart's line for the product, inserting the line if there is none
+     * (same single-statement upsert as CartItemRepository#upsertQuantity).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO guest_cart_items (guest_token, product_id, quantity, date_added, last_activity) "
+            + "VALUES (:token, :productId, :quantity, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+            + "ON DUPLICATE KEY UPDATE quantity = quantity + :quantity, last_activity = CURRENT_TIMESTAMP", nativeQuery = true)
+    int upsertQuantity(@Param("token") String token, @Param("productId") Long productId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("DELETE FROM GuestCartItem g WHERE g.guestToken = :token")
+    int deleteByGuestToken(@Param("token") String token);
+
+    /**
+     * Cleans up guest cart items referencing a product that is about to be deleted.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GuestCartItem g WHERE g.product.id = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+
+    /**
+     * Removes abandoned guest carts: every line of the tokens whose most recent activity is before the cutoff,
+     * so a cart in use never loses its older lines. (The derived table lets MySQL read the table it deletes from.)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM guest_cart_items WHERE guest_token IN (SELECT stale.guest_token FROM "
+            + "(SELECT guest_token FROM guest_cart_items GROUP BY guest_token HAVING MAX(last_activity) < :cutoff) stale)",
+            nativeQuery = true)
+    int deleteInactiveSince(@Param("cutoff") Date cutoff);
+}
@@ -0,0 +1,40 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopeAndUserIdAndIdempotencyKey(String scope, Long userId, String idempotencyKey);
+
+    /**
+     * Stores the response of a claimed request.
+     * @return 1 if the claim was still held (IN_PROGRESS).
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :completed, r.responseStatus = :responseStatus, "
+            + "r.responseBody = :responseBody, r.expiresAt = :expiresAt WHERE r.id = :id AND r.status = :inProgress")
+    int complete(@Param("id") Long id, @Param("responseStatus") int responseStatus, @Param("responseBody") String responseBody,
+                 @Param("expiresAt") Date expiresAt, @Param("inProgress") IdempotencyRecord.Status inProgress,
+                 @Param("completed") IdempotencyRecord.Status completed);
+
+    /**
+     * Drops a claim whose request failed (its work was rolled back), so the key can be retried.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status = :inProgress")
+    int release(@Param("id") Long id, @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+}
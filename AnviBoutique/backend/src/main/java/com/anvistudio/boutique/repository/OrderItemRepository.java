@@ -0,0 +1,36 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.CategorySalesDTO;
+import com.anvistudio.boutique.dto.ProductSalesDTO;
+import com.anvistudio.boutique.model.Order;
+import com.anvistudio.boutique.model.OrderItem;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface OrderItemRepository extends JpaRepository<OrderItem, Long>, OrderItemRepositoryCustom {
+
+    /**
+     * Units and revenue per product for orders in the given statuses placed since {@code from}, most units first.
+     */
+    @Query("SELECT new com.anvistudio.boutique.dto.ProductSalesDTO(i.productId, MAX(i.productName), MAX(i.sku), "
+            + "SUM(i.quantity), SUM(i.lineTotal)) FROM OrderItem i JOIN i.order o "
+            + "WHERE o.status IN :statuses AND o.orderDate >= :from "
+            + "GROUP BY i.productId ORDER BY SUM(i.quantity) DESC, i.productId")
+    List<ProductSalesDTO> sumByProduct(@Param("statuses") Collection<Order.OrderStatus> statuses,
+                                       @Param("from") Date from, Pageable pageable);
+
+    /**
+     * Units and revenue per category for orders in the given statuses placed since {@code from}, most revenue first.
+     */
+    @Query("SELECT new com.anvistudio.boutique.dto.CategorySalesDTO(i.category, SUM(i.quantity), SUM(i.lineTotal)) "
+            + "FROM OrderItem i JOIN i.order o WHERE o.status IN :statuses AND o.orderDate >= :from "
+            + "GROUP BY i.category ORDER BY SUM(i.lineTotal) DESC")
+    List<CategorySalesDTO> sumByCategory(@Param("statuses") Collection<Order.OrderStatus> statuses,
+                                         @Param("from") Date from);
+}
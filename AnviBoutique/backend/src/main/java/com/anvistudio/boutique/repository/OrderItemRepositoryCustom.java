@@ -0,0 +1,16 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.OrderItem;
+
+import java.util.List;
+
+/**
+ * Batched order line inserts, implemented in {@link OrderItemRepositoryCustomImpl}.
+ */
+public interface OrderItemRepositoryCustom {
+
+    /**
+     * Inserts the lines of a saved order as one JDBC batch, in the current transaction.
+     */
+    void insertAll(Long orderId, List<OrderItem> items);
+}
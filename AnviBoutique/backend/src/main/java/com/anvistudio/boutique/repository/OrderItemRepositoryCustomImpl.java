@@ -0,0 +1,35 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.OrderItem;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * order_items uses IDENTITY keys, for which Hibernate cannot batch inserts, so the lines go through
+ * JdbcTemplate.batchUpdate instead: one round trip per order (a single multi-row INSERT with
+ * rewriteBatchedStatements) rather than one per line. JdbcTemplate joins the surrounding JPA transaction.
+ */
+public class OrderItemRepositoryCustomImpl implements OrderItemRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO order_items (order_id, product_id, product_name, sku, "
+            + "category, image_url, unit_price, discount_percent, quantity, line_total) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderItemRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(Long orderId, List<OrderItem> items) {
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            rows.add(new Object[]{orderId, item.getProductId(), item.getProductName(), item.getSku(),
+                    item.getCategory(), item.getImageUrl(), item.getUnitPrice(), item.getDiscountPercent(),
+                    item.getQuantity(), item.getLineTotal()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+}
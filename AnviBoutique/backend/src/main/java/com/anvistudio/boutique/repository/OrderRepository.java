@@ -1,12 +1,31 @@
 package com.anvistudio.boutique.repository;
 
 import com.anvistudio.boutique.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     /**
-     * Finds all orders placed by a specific user.
+     * Finds all orders placed by a specific user, with their lines.
      */
+    @EntityGraph(attributePaths = "items")
     List<Order> findByUserIdOrderByOrderDateDesc(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * All orders with their lines (admin order list), without a query per order.
+     */
+    @Override
+    @EntityGraph(attributePaths = "items")
+    List<Order> findAll();
+
+    /**
+     * Moves the order to another status if it still has the expected one; returns 0 if it was changed meanwhile.
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.status = :to WHERE o.id = :id AND o.status = :from")
+    int transition(@Param("id") Long id, @Param("from") Order.OrderStatus from, @Param("to") Order.OrderStatus to);
+}
@@ -1,12 +1,20 @@
 package com.anvistudio.boutique.repository;
 
+import com.anvistudio.boutique.dto.CategoryDTO;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductInventoryDTO;
 import com.anvistudio.boutique.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query; // NEW
-import org.springframework.data.repository.query.Param; // NEW
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
     /**
      * Finds products by category (useful for filtering the customer view).
@@ -19,13 +27,191 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     List<Product> findTop8ByOrderByDateCreatedDesc();
 
+    // ---------------------------------------------------------------------
+    // Card projections: list endpoints only read the columns a product tile needs
+    // ---------------------------------------------------------------------
+
+    /**
+     * Latest available products (home page New Arrivals), limited by the pageable.
+     */
+    @Query("SELECT " + ProductCardDTO.SELECT + " FROM Product p WHERE p.isAvailable = true ORDER BY p.dateCreated DESC, p.id DESC")
+    List<ProductCardDTO> findNewArrivalCards(Pageable pageable);
+
+    /**
+     * Available discounted products, biggest discount first (home page sale section), limited by the pageable.
+     */
+    @Query("SELECT " + ProductCardDTO.SELECT + " FROM Product p WHERE p.isAvailable = true AND p.discountPercent > 0 "
+            + "ORDER BY p.discountPercent DESC, p.dateCreated DESC")
+    List<ProductCardDTO> findSaleCards(Pageable pageable);
+
+    /**
+     * Cards for the given ids (e.g. search hits), available products only. Order is not preserved.
+     */
+    @Query("SELECT " + ProductCardDTO.SELECT + " FROM Product p WHERE p.id IN :ids AND p.isAvailable = true")
+    List<ProductCardDTO> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Other available products of the same category, newest first, limited by the pageable.
+     */
+    @Query("SELECT " + ProductCardDTO.SELECT + " FROM Product p WHERE p.category = :category AND p.id <> :excludeId "
+            + "AND p.isAvailable = true ORDER BY p.dateCreated DESC")
+    List<ProductCardDTO> findRelatedCards(@Param("category") String category, @Param("excludeId") Long excludeId,
+                                          Pageable pageable);
+
+    /**
+     * Admin inventory table rows, all products regardless of availability.
+     */
+    @Query("SELECT " + ProductInventoryDTO.SELECT + " FROM Product p ORDER BY p.dateCreated DESC")
+    List<ProductInventoryDTO> findInventory();
+
+    /**
+     * Admin inventory table rows for one category.
+     */
+    @Query("SELECT " + ProductInventoryDTO.SELECT + " FROM Product p WHERE p.category = :category ORDER BY p.dateCreated DESC")
+    List<ProductInventoryDTO> findInventoryByCategory(@Param("category") String category);
+
+    /**
+     * Per-category count and sale price range of the available products, in one GROUP BY.
+     */
+    @Query("SELECT new com.anvistudio.boutique.dto.CategoryDTO(p.category, COUNT(p), MIN(p.salePrice), MAX(p.salePrice)) "
+            + "FROM Product p WHERE p.isAvailable = true GROUP BY p.category ORDER BY p.category")
+    List<CategoryDTO> findCategorySummaries();
+
+    /**
+     * Finds products whose persisted sale price has not been computed yet (rows created before the column existed).
+     */
+    List<Product> findBySalePriceIsNull();
+
+    // ---------------------------------------------------------------------
+    // Bulk pricing: set-based updates, sale price computed by the database
+    // (same HALF_UP rounding to 2 decimals as Product#getDiscountedPrice)
+    // ---------------------------------------------------------------------
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE products SET discount_percent = :discount, "
+            + "sale_price = ROUND(price * (100 - :discount) / 100, 2) WHERE category = :category", nativeQuery = true)
+    int applyDiscountToCategory(@Param("category") String category, @Param("discount") int discount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE products SET discount_percent = :discount, "
+            + "sale_price = ROUND(price * (100 - :discount) / 100, 2) WHERE id IN (:ids)", nativeQuery = true)
+    int applyDiscountToIds(@Param("ids") Collection<Long> ids, @Param("discount") int discount);
+
+    /**
+     * Available products of a category that are not discounted yet (candidates for a sale announcement).
+     */
+    List<Product> findByCategoryAndDiscountPercentAndIsAvailableTrue(String category, Integer discountPercent);
+
+    List<Product> findByIdInAndDiscountPercentAndIsAvailableTrue(Collection<Long> ids, Integer discountPercent);
+
+    // ---------------------------------------------------------------------
+    // Rating summary (see RatingStats): written only by these statements
+    // ---------------------------------------------------------------------
+
+    /**
+     * Atomically adds (delta = 1) or removes (delta = -1) one approved rating of the given stars.
+     * average_rating is assigned first so it reads the old count and sum on every database
+     * (MySQL applies SET assignments left to right, standard SQL uses the old row).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE products SET "
+            + "average_rating = CASE WHEN rating_count + :delta > 0 "
+            + "THEN ROUND((rating_sum + :delta * :stars) * 1.0 / (rating_count + :delta), 2) ELSE 0 END, "
+            + "rating_count = rating_count + :delta, "
+            + "rating_sum = rating_sum + :delta * :stars, "
+            + "one_star_count = one_star_count + CASE WHEN :stars = 1 THEN :delta ELSE 0 END, "
+            + "two_star_count = two_star_count + CASE WHEN :stars = 2 THEN :delta ELSE 0 END, "
+            + "three_star_count = three_star_count + CASE WHEN :stars = 3 THEN :delta ELSE 0 END, "
+            + "four_star_count = four_star_count + CASE WHEN :stars = 4 THEN :delta ELSE 0 END, "
+            + "five_star_count = five_star_count + CASE WHEN :stars = 5 THEN :delta ELSE 0 END "
+            + "WHERE id = :productId", nativeQuery = true)
+    int adjustRatingStats(@Param("productId") Long productId, @Param("stars") int stars, @Param("delta") int delta);
+
+    /**
+     * Overwrites the rating summary with recomputed values (startup reconciliation).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE products SET rating_count = :count, rating_sum = :sum, average_rating = :average, "
+            + "one_star_count = :one, two_star_count = :two, three_star_count = :three, "
+            + "four_star_count = :four, five_star_count = :five WHERE id = :productId", nativeQuery = true)
+    int overwriteRatingStats(@Param("productId") Long productId, @Param("count") int count, @Param("sum") long sum,
+                             @Param("average") BigDecimal average, @Param("one") int one, @Param("two") int two,
+                             @Param("three") int three, @Param("four") int four, @Param("five") int five);
+
+    /**
+     * Stored star histogram of every product: [id, one, two, three, four, five].
+     */
+    @Query("SELECT p.id, p.ratingStats.oneStarCount, p.ratingStats.twoStarCount, p.ratingStats.threeStarCount, "
+            + "p.ratingStats.fourStarCount, p.ratingStats.fiveStarCount FROM Product p")
+    List<Object[]> findStoredRatingHistograms();
+
+    /**
+     * Stored average rating of a product, without loading the entity.
+     */
+    @Query("SELECT p.ratingStats.averageRating FROM Product p WHERE p.id = :productId")
+    Optional<BigDecimal> findAverageRating(@Param("productId") Long productId);
+
+    /**
+     * Stored number of approved ratings of a product, without loading the entity.
+     */
+    @Query("SELECT p.ratingStats.ratingCount FROM Product p WHERE p.id = :productId")
+    Optional<Integer> findRatingCount(@Param("productId") Long productId);
+
+    // ---------------------------------------------------------------------
+    // Stock reservations: single conditional statements, so concurrent checkouts
+    // never oversell and each row lock is held only for one short statement
+    // ---------------------------------------------------------------------
+
+    /**
+     * Takes the quantity out of stock if at least that much is left.
+     * @return 1 if the stock was taken, 0 if there is not enough (or the product is unavailable).
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET stock_quantity = stock_quantity - :quantity "
+            + "WHERE id = :id AND is_available = TRUE AND stock_quantity >= :quantity", nativeQuery = true)
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Current stock of an available product, read from the database (not from entities already loaded).
+     */
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id AND p.isAvailable = true")
+    Optional<Integer> findAvailableStock(@Param("id") Long id);
+
+    /**
+     * Puts released reserved stock back.
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET stock_quantity = stock_quantity + :quantity WHERE id = :id", nativeQuery = true)
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Current stock of the given products: [id, stockQuantity].
+     */
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Applies an admin stock change as a delta, so units reserved meanwhile are not overwritten. Never goes below zero.
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET stock_quantity = GREATEST(stock_quantity + :delta, 0) WHERE id = :id", nativeQuery = true)
+    int adjustStock(@Param("id") Long id, @Param("delta") int delta);
+
+    /**
+     * Current stock of the product, read from the database (not from entities already loaded).
+     */
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+    Optional<Integer> findStock(@Param("id") Long id);
+
+    /**
+     * Current stock of every available flash-sale product: [id, stockQuantity].
+     */
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.flashSale = true AND p.isAvailable = true")
+    List<Object[]> findFlashSaleStock();
+
     /**
-     * NEW: Finds products matching a keyword across name, category, SKU, and color.
+     * Products among the given ids whose stock is at or below the threshold.
      */
-    @Query("SELECT p FROM Product p WHERE " +
-            "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.category) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.sku) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(p.productColor) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    List<Product> searchByKeyword(@Param("keyword") String keyword); //
-}
\ No newline at end of file
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids AND p.stockQuantity <= :threshold")
+    List<Product> findLowStock(@Param("ids") Collection<Long> ids, @Param("threshold") int threshold);
+}
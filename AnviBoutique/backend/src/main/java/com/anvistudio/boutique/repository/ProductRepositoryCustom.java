@@ -0,0 +1,32 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductFilterDTO;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+
+import java.util.List;
+
+/**
+ * Criteria-based queries for the shop page, implemented in {@link ProductRepositoryCustomImpl}.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Runs the filter and sort in SQL and returns one page of available products as cards.
+     * If a cursor is given the page starts right after it (keyset seek), otherwise at {@code page * size} (OFFSET).
+     */
+    ProductPageDTO<ProductCardDTO> findFilteredPage(ProductFilterDTO filter, int page, int size, PageCursor after);
+
+    /**
+     * Runs the same filter and sort in SQL without paging.
+     */
+    List<ProductCardDTO> findFiltered(ProductFilterDTO filter);
+
+    /**
+     * The order a sortBy parameter selects (unknown values and null give the default); cursors are issued for it.
+     */
+    static String sortOrder(String sortBy) {
+        return ProductRepositoryCustomImpl.SortKey.fromParam(sortBy).name();
+    }
+}
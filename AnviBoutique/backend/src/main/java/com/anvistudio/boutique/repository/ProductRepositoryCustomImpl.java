@@ -0,0 +1,273 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductFilterDTO;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.search.SearchTokenizer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CompoundSelection;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Translates {@link ProductFilterDTO} into a single Criteria query so that filtering, sorting
+ * and pagination all happen in the database instead of on a fully loaded product list.
+ * Results are {@link ProductCardDTO} projections, so the TEXT columns are never read.
+ */
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final int LOW_STOCK_THRESHOLD = 5;
+    private static final int CLEARANCE_DISCOUNT_PERCENT = 50;
+    // Larger keyword match sets are filtered with LIKE instead of an IN list of every matching id
+    private static final int MAX_ID_FILTER_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public ProductPageDTO<ProductCardDTO> findFilteredPage(ProductFilterDTO filter, int page, int size, PageCursor after) {
+        SortKey sortKey = SortKey.fromParam(filter.getSortBy());
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // 1. Total for the whole filter (the cursor only moves the window, it does not change the total)
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Product> countRoot = countQuery.from(Product.class);
+        countQuery.select(cb.count(countRoot))
+                .where(buildPredicates(filter, countRoot, cb).toArray(new Predicate[0]));
+        long total = entityManager.createQuery(countQuery).getSingleResult();
+
+        // 2. Page content: seek past the cursor, or fall back to OFFSET. One extra row tells us if there is a next page.
+        CriteriaQuery<ProductCardDTO> query = cb.createQuery(ProductCardDTO.class);
+        Root<Product> root = query.from(Product.class);
+        List<Predicate> predicates = buildPredicates(filter, root, cb);
+        if (after != null) {
+            predicates.add(sortKey.seekPast(after, root, cb));
+        }
+        query.select(card(root, cb))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(sortKey.orders(root, cb));
+
+        TypedQuery<ProductCardDTO> typedQuery = entityManager.createQuery(query).setMaxResults(size + 1);
+        if (after == null) {
+            typedQuery.setFirstResult(page * size);
+        }
+        List<ProductCardDTO> content = new ArrayList<>(typedQuery.getResultList());
+
+        String nextCursor = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            nextCursor = sortKey.cursorOf(content.get(size - 1)).encode();
+        }
+
+        return ProductPageDTO.of(content, after == null ? page : 0, size, total, nextCursor);
+    }
+
+    @Override
+    public List<ProductCardDTO> findFiltered(ProductFilterDTO filter) {
+        SortKey sortKey = SortKey.fromParam(filter.getSortBy());
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<ProductCardDTO> query = cb.createQuery(ProductCardDTO.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(card(root, cb))
+                .where(buildPredicates(filter, root, cb).toArray(new Predicate[0]))
+                .orderBy(sortKey.orders(root, cb));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * Builds the WHERE clause. Customers only ever see products marked as available.
+     */
+    private List<Predicate> buildPredicates(ProductFilterDTO filter, Root<Product> root, CriteriaBuilder cb) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(root.get("isAvailable")));
+
+        // 1. Keyword (takes precedence over category) or Category
+        String keyword = trimToNull(filter.getKeyword());
+        String category = trimToNull(filter.getCategory());
+        boolean keywordSearch = filter.getProductIds() != null || keyword != null;
+        if (filter.getProductIds() != null && (keyword == null || filter.getProductIds().size() <= MAX_ID_FILTER_SIZE)) {
+            // Keyword already resolved to ids by the in-memory search index
+            predicates.add(filter.getProductIds().isEmpty()
+                    ? cb.disjunction()
+                    : root.get("id").in(filter.getProductIds()));
+        } else if (keyword != null) {
+            // While the search index is still being built, or for a very common keyword: every term has to
+            // appear in one of the searched fields, like in the index
+            List<String> terms = SearchTokenizer.tokenize(keyword);
+            if (terms.isEmpty()) {
+                predicates.add(cb.disjunction());
+            }
+            for (String term : terms) {
+                String pattern = "%" + term + "%";
+                predicates.add(cb.or(
+                        cb.like(cb.lower(root.<String>get("name")), pattern),
+                        cb.like(cb.lower(root.<String>get("productTags")), pattern),
+                        cb.like(cb.lower(root.<String>get("category")), pattern),
+                        cb.like(cb.lower(root.<String>get("sku")), pattern),
+                        cb.like(cb.lower(root.<String>get("productColor")), pattern)));
+            }
+        }
+        if (!keywordSearch && category != null) {
+            predicates.add(cb.equal(root.get("category"), category));
+        }
+
+        // 2. Price range on the discounted price
+        if (filter.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(salePrice(root), BigDecimal.valueOf(filter.getMinPrice())));
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(salePrice(root), BigDecimal.valueOf(filter.getMaxPrice())));
+        }
+
+        // 3. Color (substring match, as before)
+        String color = trimToNull(filter.getColor());
+        if (color != null) {
+            predicates.add(cb.like(cb.lower(root.<String>get("productColor")), "%" + color.toLowerCase() + "%"));
+        }
+
+        // 4. Status
+        String status = trimToNull(filter.getStatus());
+        if (status != null) {
+            Path<Integer> stock = root.get("stockQuantity");
+            Path<Integer> discount = root.get("discountPercent");
+            switch (status) {
+                case "inStock":
+                    predicates.add(cb.greaterThan(stock, 0));
+                    break;
+                case "lowStock":
+                    predicates.add(cb.between(stock, 1, LOW_STOCK_THRESHOLD));
+                    break;
+                case "onSale":
+                    predicates.add(cb.greaterThan(discount, 0));
+                    break;
+                case "clearance":
+                    predicates.add(cb.greaterThanOrEqualTo(discount, CLEARANCE_DISCOUNT_PERCENT));
+                    break;
+            }
+        }
+
+        return predicates;
+    }
+
+    /**
+     * Constructor projection onto {@link ProductCardDTO}; same column list as {@link ProductCardDTO#SELECT}.
+     */
+    private static CompoundSelection<ProductCardDTO> card(Root<Product> root, CriteriaBuilder cb) {
+        return cb.construct(ProductCardDTO.class,
+                root.get("id"), root.get("name"), root.get("category"), root.get("price"),
+                root.get("discountPercent"), root.get("salePrice"), root.get("imageUrl"),
+                root.get("productColor"), root.get("stockQuantity"), root.get("dateCreated"),
+                averageRating(root), root.get("ratingStats").get("ratingCount"));
+    }
+
+    /**
+     * The persisted, indexed sale price (see {@link Product#refreshSalePrice()}).
+     */
+    private static Expression<BigDecimal> salePrice(Root<Product> root) {
+        return root.get("salePrice");
+    }
+
+    /**
+     * The stored average of the approved reviews (see {@link com.anvistudio.boutique.model.RatingStats}).
+     */
+    private static Expression<BigDecimal> averageRating(Root<Product> root) {
+        return root.get("ratingStats").get("averageRating");
+    }
+
+    private static String trimToNull(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : value.trim();
+    }
+
+    /**
+     * Supported sort orders. The product id is always the tie-breaker so that the order is total
+     * and a (key, id) cursor identifies a unique position.
+     */
+    enum SortKey {
+        LATEST(true), OLDEST(false), PRICE_ASC(false), PRICE_DESC(true), RATING(true);
+
+        private final boolean descending;
+
+        SortKey(boolean descending) {
+            this.descending = descending;
+        }
+
+        static SortKey fromParam(String sortBy) {
+            if (sortBy == null) {
+                return LATEST;
+            }
+            switch (sortBy) {
+                case "oldest":
+                    return OLDEST;
+                case "priceAsc":
+                    return PRICE_ASC;
+                case "priceDesc":
+                    return PRICE_DESC;
+                case "rating":
+                    return RATING;
+                case "latest":
+                default:
+                    return LATEST;
+            }
+        }
+
+        private boolean byPrice() {
+            return this == PRICE_ASC || this == PRICE_DESC;
+        }
+
+        List<jakarta.persistence.criteria.Order> orders(Root<Product> root, CriteriaBuilder cb) {
+            Expression<?> key = this == RATING ? averageRating(root)
+                    : byPrice() ? salePrice(root) : root.get("dateCreated");
+            Path<Long> id = root.get("id");
+            return descending
+                    ? List.of(cb.desc(key), cb.desc(id))
+                    : List.of(cb.asc(key), cb.asc(id));
+        }
+
+        Predicate seekPast(PageCursor after, Root<Product> root, CriteriaBuilder cb) {
+            Path<Long> id = root.get("id");
+            if (this == RATING) {
+                return seek(cb, averageRating(root), after.numericValue(), id, after.getId(), descending);
+            }
+            if (byPrice()) {
+                return seek(cb, salePrice(root), after.numericValue(), id, after.getId(), descending);
+            }
+            return seek(cb, root.<Date>get("dateCreated"), new Date(after.numericValue().longValue()), id, after.getId(), descending);
+        }
+
+        PageCursor cursorOf(ProductCardDTO last) {
+            if (this == RATING) {
+                return new PageCursor(name(), last.getAverageRating().toPlainString(), last.getId());
+            }
+            String value = byPrice()
+                    ? last.getSalePrice().toPlainString()
+                    : String.valueOf(last.getDateCreated().getTime());
+            return new PageCursor(name(), value, last.getId());
+        }
+
+        /**
+         * (key, id) strictly after (value, lastId) in the given direction.
+         */
+        private static <Y extends Comparable<? super Y>> Predicate seek(CriteriaBuilder cb, Expression<? extends Y> key, Y value,
+                                                                       Path<Long> id, Long lastId, boolean descending) {
+            if (descending) {
+                return cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+            }
+            return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.DailySalesDTO;
+import com.anvistudio.boutique.model.ProductSalesDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+public interface ProductSalesDailyRepository extends JpaRepository<ProductSalesDaily, Long> {
+
+    /**
+     * Adds an order line to the product's row for the day, creating it if needed.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO product_sales_daily (sale_date, product_id, category, units, revenue) "
+            + "VALUES (:saleDate, :productId, :category, :units, :revenue) "
+            + "ON DUPLICATE KEY UPDATE units = units + VALUES(units), revenue = revenue + VALUES(revenue)", nativeQuery = true)
+    int addSale(@Param("saleDate") Date saleDate, @Param("productId") Long productId, @Param("category") String category,
+                @Param("units") long units, @Param("revenue") BigDecimal revenue);
+
+    /**
+     * Takes a cancelled or returned order line out of the product's row for the day. Lines of orders placed
+     * before the rollup existed have no row and are left alone.
+     */
+    @Modifying
+    @Query(value = "UPDATE product_sales_daily SET units = units - :units, revenue = revenue - :revenue "
+            + "WHERE sale_date = :saleDate AND product_id = :productId", nativeQuery = true)
+    int removeSale(@Param("saleDate") Date saleDate, @Param("productId") Long productId,
+                   @Param("units") long units, @Param("revenue") BigDecimal revenue);
+
+    /**
+     * Totals per day since {@code from}, oldest first.
+     */
+    @Query("SELECT new com.anvistudio.boutique.dto.DailySalesDTO(s.saleDate, SUM(s.units), SUM(s.revenue)) "
+            + "FROM ProductSalesDaily s WHERE s.saleDate >= :from GROUP BY s.saleDate ORDER BY s.saleDate")
+    List<DailySalesDTO> sumByDay(@Param("from") Date from);
+}
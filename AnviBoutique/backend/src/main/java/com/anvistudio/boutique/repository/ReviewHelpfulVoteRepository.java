@@ -0,0 +1,24 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.ReviewHelpfulVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ReviewHelpfulVoteRepository extends JpaRepository<ReviewHelpfulVote, Long> {
+
+    /**
+     * Records the user's vote on an approved review of the product. Returns 0 if there is no such review
+     * or the user already voted on it (the unique key makes INSERT IGNORE skip the row).
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO review_helpful_votes (review_id, user_id, date_voted) "
+            + "SELECT r.id, :userId, CURRENT_TIMESTAMP FROM product_reviews r "
+            + "WHERE r.id = :reviewId AND r.product_id = :productId AND r.is_approved = true", nativeQuery = true)
+    int insertIgnore(@Param("productId") Long productId, @Param("reviewId") Long reviewId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM ReviewHelpfulVote v WHERE v.reviewId = :reviewId")
+    int deleteByReviewId(@Param("reviewId") Long reviewId);
+}
@@ -2,6 +2,7 @@ package com.anvistudio.boutique.repository;
 
 import com.anvistudio.boutique.model.Review;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -11,12 +12,7 @@ import java.util.Optional;
 /**
  * Repository for managing product reviews.
  */
-public interface ReviewRepository extends JpaRepository<Review, Long> {
-
-    /**
-     * Finds all approved reviews for a specific product.
-     */
-    List<Review> findByProductIdAndIsApprovedTrueOrderByDatePostedDesc(Long productId);
+public interface ReviewRepository extends JpaRepository<Review, Long>, ReviewRepositoryCustom {
 
     /**
      * Finds a user's existing review for a specific product.
@@ -24,18 +20,24 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     Optional<Review> findByUserIdAndProductId(Long userId, Long productId);
 
     /**
-     * Calculates the average rating for a specific product based on approved reviews.
+     * Finds all unapproved reviews (for admin moderation).
      */
-    @Query("SELECT AVG(r.rating) FROM Review r WHERE r.product.id = :productId AND r.isApproved = true")
-    Optional<Double> findAverageRatingByProductId(@Param("productId") Long productId);
+    List<Review> findByIsApprovedFalseOrderByDatePostedAsc();
 
     /**
-     * Counts the total number of approved reviews for a product.
+     * Approved review counts per product and star: [productId, rating, count].
      */
-    long countByProductIdAndIsApprovedTrue(Long productId);
+    @Query("SELECT r.product.id, r.rating, COUNT(r) FROM Review r WHERE r.isApproved = true GROUP BY r.product.id, r.rating")
+    List<Object[]> countApprovedByProductAndRating();
+
+    boolean existsByIdAndProductIdAndIsApprovedTrue(Long id, Long productId);
 
     /**
-     * Finds all unapproved reviews (for admin moderation).
+     * Adds one "helpful" vote to an approved review of the product in place; returns 0 if there is no such review.
+     * Called once the vote was recorded in ReviewHelpfulVoteRepository.
      */
-    List<Review> findByIsApprovedFalseOrderByDatePostedAsc();
-}
\ No newline at end of file
+    @Modifying
+    @Query("UPDATE Review r SET r.helpfulCount = r.helpfulCount + 1 "
+            + "WHERE r.id = :reviewId AND r.product.id = :productId AND r.isApproved = true")
+    int incrementHelpfulCount(@Param("productId") Long productId, @Param("reviewId") Long reviewId);
+}
@@ -0,0 +1,25 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.ReviewDTO;
+
+/**
+ * Criteria-based review listing, implemented in {@link ReviewRepositoryCustomImpl}.
+ */
+public interface ReviewRepositoryCustom {
+
+    /**
+     * One page of a product's approved reviews in the given order ("newest", "helpful", "highest", "lowest").
+     * If a cursor is given the page starts right after it (keyset seek), otherwise at the first review.
+     * @param total the product's approved review count (its stored rating count), reported as the page total.
+     */
+    ProductPageDTO<ReviewDTO> findApprovedPage(Long productId, long total, String sortBy, int size, PageCursor after);
+
+    /**
+     * The order a sortBy parameter selects (unknown values and null give the default); cursors are issued for it.
+     */
+    static String sortOrder(String sortBy) {
+        return ReviewRepositoryCustomImpl.SortKey.fromParam(sortBy).name();
+    }
+}
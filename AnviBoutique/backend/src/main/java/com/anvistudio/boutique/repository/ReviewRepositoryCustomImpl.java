@@ -0,0 +1,139 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.ReviewDTO;
+import com.anvistudio.boutique.model.Review;
+import com.anvistudio.boutique.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keyset (seek) pagination over a product's approved reviews, so a page costs the same
+ * whether the product has ten reviews or ten thousand. Each sort order is backed by one of the
+ * (product_id, is_approved, key, id) indexes on product_reviews.
+ */
+public class ReviewRepositoryCustomImpl implements ReviewRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public ProductPageDTO<ReviewDTO> findApprovedPage(Long productId, long total, String sortBy, int size, PageCursor after) {
+        SortKey sortKey = SortKey.fromParam(sortBy);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // Page content, one extra row to know whether there is a next page
+        CriteriaQuery<ReviewDTO> query = cb.createQuery(ReviewDTO.class);
+        Root<Review> root = query.from(Review.class);
+        Join<Review, User> user = root.join("user");
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(approvedFor(productId, root, cb));
+        if (after != null) {
+            predicates.add(sortKey.seekPast(after, root, cb));
+        }
+        query.select(cb.construct(ReviewDTO.class,
+                        root.get("id"), root.get("rating"), root.get("comment"), root.get("datePosted"),
+                        root.get("helpfulCount"), user.get("username")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(sortKey.orders(root, cb));
+
+        List<ReviewDTO> content = new ArrayList<>(entityManager.createQuery(query).setMaxResults(size + 1).getResultList());
+
+        String nextCursor = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            nextCursor = sortKey.cursorOf(content.get(size - 1)).encode();
+        }
+        return ProductPageDTO.of(content, 0, size, total, nextCursor);
+    }
+
+    private static Predicate approvedFor(Long productId, Root<Review> root, CriteriaBuilder cb) {
+        return cb.and(cb.equal(root.get("product").get("id"), productId), cb.isTrue(root.get("isApproved")));
+    }
+
+    /**
+     * Supported review orders; the review id is the tie-breaker so a (key, id) cursor is a unique position.
+     */
+    enum SortKey {
+        NEWEST("datePosted", true), HELPFUL("helpfulCount", true), HIGHEST("rating", true), LOWEST("rating", false);
+
+        private final String attribute;
+        private final boolean descending;
+
+        SortKey(String attribute, boolean descending) {
+            this.attribute = attribute;
+            this.descending = descending;
+        }
+
+        static SortKey fromParam(String sortBy) {
+            if (sortBy == null) {
+                return NEWEST;
+            }
+            switch (sortBy) {
+                case "helpful":
+                    return HELPFUL;
+                case "highest":
+                    return HIGHEST;
+                case "lowest":
+                    return LOWEST;
+                case "newest":
+                default:
+                    return NEWEST;
+            }
+        }
+
+        List<jakarta.persistence.criteria.Order> orders(Root<Review> root, CriteriaBuilder cb) {
+            Path<Object> key = root.get(attribute);
+            Path<Long> id = root.get("id");
+            return descending
+                    ? List.of(cb.desc(key), cb.desc(id))
+                    : List.of(cb.asc(key), cb.asc(id));
+        }
+
+        Predicate seekPast(PageCursor after, Root<Review> root, CriteriaBuilder cb) {
+            Path<Long> id = root.get("id");
+            if (this == NEWEST) {
+                return seek(cb, root.<Date>get(attribute), new Date(after.numericValue().longValue()), id, after.getId(), descending);
+            }
+            return seek(cb, root.<Integer>get(attribute), after.numericValue().intValue(), id, after.getId(), descending);
+        }
+
+        PageCursor cursorOf(ReviewDTO last) {
+            String value;
+            switch (this) {
+                case NEWEST:
+                    value = String.valueOf(last.getDatePosted().getTime());
+                    break;
+                case HELPFUL:
+                    value = String.valueOf(last.getHelpfulCount());
+                    break;
+                default:
+                    value = String.valueOf(last.getRating());
+            }
+            return new PageCursor(name(), value, last.getId());
+        }
+
+        /**
+         * (key, id) strictly after (value, lastId) in the given direction.
+         */
+        private static <Y extends Comparable<? super Y>> Predicate seek(CriteriaBuilder cb, Expression<? extends Y> key, Y value,
+                                                                       Path<Long> id, Long lastId, boolean descending) {
+            if (descending) {
+                return cb.or(cb.lessThan(key, value), cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+            }
+            return cb.or(cb.greaterThan(key, value), cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.anvistudio.boutique.repository;
+
+import com.anvistudio.boutique.model.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    List<StockReservation> findByUserIdAndStatus(Long userId, StockReservation.Status status);
+
+    /**
+     * Reservations in the given status that expired before the given time, oldest first.
+     */
+    List<StockReservation> findByStatusAndExpiresAtBeforeOrderByExpiresAt(StockReservation.Status status, Date now, Pageable pageable);
+
+    /**
+     * Moves a reservation from one status to another if nobody else did first; the expiry sweep and
+     * a finalizing checkout can race for the same hold, and only the winner may move its stock.
+     * @return 1 if this call made the transition.
+     */
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :to WHERE r.id = :id AND r.status = :from")
+    int transition(@Param("id") Long id, @Param("from") StockReservation.Status from, @Param("to") StockReservation.Status to);
+
+    /**
+     * Extends a reservation that is still in the given status (a re-opened checkout keeps unchanged lines).
+     * @return 1 if the reservation has been extended.
+     */
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.expiresAt = :expiresAt WHERE r.id = :id AND r.status = :status")
+    int extend(@Param("id") Long id, @Param("status") StockReservation.Status status, @Param("expiresAt") Date expiresAt);
+}
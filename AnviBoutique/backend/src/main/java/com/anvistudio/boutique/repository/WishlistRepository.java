@@ -1,8 +1,11 @@
 package com.anvistudio.boutique.repository;
 
+import com.anvistudio.boutique.dto.ProductCardDTO;
 import com.anvistudio.boutique.model.Wishlist;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying; // NEW
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional; // NEW
 import java.util.List;
 import java.util.Optional;
@@ -14,6 +17,12 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
      */
     List<Wishlist> findByUserId(Long userId);
 
+    /**
+     * Card projections of the products in a user's wishlist, most recently added first (one query, no entity loading).
+     */
+    @Query("SELECT " + ProductCardDTO.SELECT + " FROM Wishlist w JOIN w.product p WHERE w.user.id = :userId ORDER BY w.dateAdded DESC")
+    List<ProductCardDTO> findProductCardsByUserId(@Param("userId") Long userId);
+
     /**
      * Finds a specific wishlist item by user ID and product ID (used for checking if an item is already wished).
      */
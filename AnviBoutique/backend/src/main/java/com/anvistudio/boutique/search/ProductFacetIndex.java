@@ -0,0 +1,422 @@
+package com.anvistudio.boutique.search;
+
+import com.anvistudio.boutique.dto.FacetCountsDTO;
+import com.anvistudio.boutique.dto.ProductFilterDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for the shop sidebar (category, color, price range, status) computed from in-memory bitsets.
+ *
+ * Every available product gets a document number, and every facet value holds a {@link BitSet} of the
+ * documents having it. Applying a filter is a bitwise AND and counting a facet value is the cardinality of an
+ * intersection, so all sidebar counts come out of one pass over the bitsets without any extra database query.
+ * Single-product changes update the bitsets in place (numbers of removed products are reused), stock
+ * reservations only flip the stock status bits of their products; only bulk updates reload the catalog.
+ *
+ * The filter semantics mirror {@code ProductRepositoryCustomImpl}, so counts always match the listing.
+ */
+@Component
+public class ProductFacetIndex {
+
+    // Same thresholds as the SQL status filter in ProductRepositoryCustomImpl
+    private static final int LOW_STOCK_THRESHOLD = 5;
+    private static final int CLEARANCE_DISCOUNT_PERCENT = 50;
+
+    private static final String[] STATUSES = {"inStock", "lowStock", "onSale", "clearance"};
+
+    // Upper bounds (exclusive) of the sale price buckets; the last bucket is open-ended
+    private static final int[] PRICE_BOUNDS = {1000, 5000, 10000, 25000};
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> docsById = new HashMap<>();
+    private final List<BigDecimal> salePrices = new ArrayList<>();  // doc -> sale price
+    private final List<Integer> stocks = new ArrayList<>();         // doc -> stock quantity
+    private final BitSet all = new BitSet();
+    private final BitSet freeDocs = new BitSet();                   // numbers of removed products, reused first
+    // Categories and colors compare case-insensitively, like the (case-insensitive collation) SQL filter
+    private final Map<String, BitSet> categories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, BitSet> colors = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Map<String, BitSet> priceRanges = new LinkedHashMap<>();
+    private final Map<String, BitSet> statuses = new LinkedHashMap<>();
+    private volatile boolean ready;
+    // Single-product changes made while reload() reads the catalog, replayed on top of what it read
+    private List<Runnable> changesDuringReload;
+
+    public ProductFacetIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        for (String status : STATUSES) {
+            statuses.put(status, new BitSet());
+        }
+        for (int i = 0; i <= PRICE_BOUNDS.length; i++) {
+            priceRanges.put(priceRangeLabel(i), new BitSet());
+        }
+    }
+
+    /**
+     * Builds the index from the database once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        reload();
+        System.out.println("SEARCH INFO: Facet index built with " + size() + " products.");
+    }
+
+    /**
+     * Keeps the index in sync with committed catalog changes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.getType()) {
+            case SAVED:
+                upsert(event.getProduct());
+                break;
+            case DELETED:
+                remove(event.getProductId());
+                break;
+            case BULK_UPDATED:
+                reload();
+                break;
+        }
+    }
+
+    /**
+     * Patches the stock status of reserved or released products.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        applyStockChanges(event.getStockChanges());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the whole catalog from the database and replaces the index content with it.
+     * The catalog is read without holding the lock, so counts keep being served meanwhile; changes that
+     * arrive during the load may be missing from it and are applied again on top of the new content.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            changesDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Product> products = null;
+        try {
+            products = productRepository.findAll();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (products != null) {
+                    rebuild(products);
+                    changesDuringReload.forEach(Runnable::run);
+                }
+                changesDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole index content.
+     */
+    public void rebuild(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            docsById.clear();
+            salePrices.clear();
+            stocks.clear();
+            all.clear();
+            freeDocs.clear();
+            categories.clear();
+            colors.clear();
+            priceRanges.values().forEach(BitSet::clear);
+            statuses.values().forEach(BitSet::clear);
+            for (Product product : products) {
+                addDocument(product);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or re-indexes a product. Unavailable products are removed, since customers never see them.
+     */
+    public void upsert(Product product) {
+        apply(() -> {
+            removeDocument(product.getId());
+            addDocument(product);
+        });
+    }
+
+    public void remove(Long productId) {
+        apply(() -> removeDocument(productId));
+    }
+
+    /**
+     * Applies stock changes (productId -> delta). Unlike the other changes they are not replayed after a reload:
+     * the catalog it read may already contain them, and a delta must not be counted twice.
+     */
+    public void applyStockChanges(Map<Long, Integer> stockChanges) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Integer> change : stockChanges.entrySet()) {
+                Integer doc = docsById.get(change.getKey());
+                if (doc != null) {
+                    int stock = stocks.get(doc) + change.getValue();
+                    stocks.set(doc, stock);
+                    setStockStatuses(doc, stock);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts every facet value for the given filter. The keyword must already be resolved to
+     * {@code productIds}; returns null if it is not, or if the index has not been built yet.
+     */
+    public FacetCountsDTO count(ProductFilterDTO filter) {
+        String keyword = trimToNull(filter.getKeyword());
+        if (!ready || (keyword != null && filter.getProductIds() == null)) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            // 1. One bitset per active filter (null = not filtering on it)
+            BitSet keywordDocs = filter.getProductIds() != null ? docsOf(filter.getProductIds()) : null;
+            String category = trimToNull(filter.getCategory());
+            BitSet categoryDocs = (keywordDocs == null && category != null)
+                    ? categories.getOrDefault(category, new BitSet()) : null;
+            BitSet priceDocs = (filter.getMinPrice() != null || filter.getMaxPrice() != null)
+                    ? docsInPriceRange(filter.getMinPrice(), filter.getMaxPrice()) : null;
+            String color = trimToNull(filter.getColor());
+            BitSet colorDocs = color != null ? docsWithColorLike(color) : null;
+            // An unknown status is ignored, as by the SQL filter
+            String status = trimToNull(filter.getStatus());
+            BitSet statusDocs = status != null ? statuses.get(status) : null;
+
+            // 2. Each facet is counted against all filters except its own (disjunctive faceting)
+            FacetCountsDTO facets = new FacetCountsDTO();
+            BitSet base = and(all, keywordDocs, priceDocs, colorDocs, statusDocs);
+            countValues(base, categories, facets.getCategories());
+
+            base = and(all, keywordDocs, categoryDocs, colorDocs, statusDocs);
+            countValues(base, priceRanges, facets.getPriceRanges());
+
+            base = and(all, keywordDocs, categoryDocs, priceDocs, statusDocs);
+            countValues(base, colors, facets.getColors());
+
+            base = and(all, keywordDocs, categoryDocs, priceDocs, colorDocs);
+            countValues(base, statuses, facets.getStatuses());
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static BitSet and(BitSet all, BitSet... filters) {
+        BitSet result = (BitSet) all.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private static void countValues(BitSet base, Map<String, BitSet> values, Map<String, Integer> counts) {
+        BitSet scratch = new BitSet(base.length());
+        for (Map.Entry<String, BitSet> value : values.entrySet()) {
+            scratch.clear();
+            scratch.or(base);
+            scratch.and(value.getValue());
+            counts.put(value.getKey(), scratch.cardinality());
+        }
+    }
+
+    private static String trimToNull(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : value.trim();
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals (callers hold the appropriate lock)
+    // ---------------------------------------------------------------------
+
+    private void addDocument(Product product) {
+        if (product.getId() == null || !Boolean.TRUE.equals(product.getIsAvailable())) {
+            return;
+        }
+
+        int doc = freeDocs.isEmpty() ? salePrices.size() : freeDocs.nextSetBit(0);
+        freeDocs.clear(doc);
+        BigDecimal salePrice = product.getSalePrice() != null ? product.getSalePrice() : product.getDiscountedPrice();
+        int stock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        if (doc == salePrices.size()) {
+            salePrices.add(salePrice);
+            stocks.add(stock);
+        } else {
+            salePrices.set(doc, salePrice);
+            stocks.set(doc, stock);
+        }
+        docsById.put(product.getId(), doc);
+        all.set(doc);
+
+        if (product.getCategory() != null) {
+            categories.computeIfAbsent(product.getCategory(), c -> new BitSet()).set(doc);
+        }
+        String color = trimToNull(product.getProductColor());
+        if (color != null) {
+            colors.computeIfAbsent(color, c -> new BitSet()).set(doc);
+        }
+        if (salePrice != null) {
+            priceRanges.get(priceRangeLabel(priceBucket(salePrice))).set(doc);
+        }
+
+        int discount = product.getDiscountPercent() != null ? product.getDiscountPercent() : 0;
+        setStockStatuses(doc, stock);
+        statuses.get("onSale").set(doc, discount > 0);
+        statuses.get("clearance").set(doc, discount >= CLEARANCE_DISCOUNT_PERCENT);
+    }
+
+    private void removeDocument(Long productId) {
+        Integer doc = docsById.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        all.clear(doc);
+        salePrices.set(doc, null);
+        freeDocs.set(doc);
+        clearDoc(categories, doc, true);
+        clearDoc(colors, doc, true);
+        clearDoc(priceRanges, doc, false);
+        clearDoc(statuses, doc, false);
+    }
+
+    private void setStockStatuses(int doc, int stock) {
+        statuses.get("inStock").set(doc, stock > 0);
+        statuses.get("lowStock").set(doc, stock >= 1 && stock <= LOW_STOCK_THRESHOLD);
+    }
+
+    /**
+     * Clears the document from every value; values no product has any more are dropped if {@code dropEmpty}.
+     */
+    private static void clearDoc(Map<String, BitSet> values, int doc, boolean dropEmpty) {
+        Iterator<BitSet> iterator = values.values().iterator();
+        while (iterator.hasNext()) {
+            BitSet docs = iterator.next();
+            docs.clear(doc);
+            if (dropEmpty && docs.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private BitSet docsOf(Iterable<Long> ids) {
+        BitSet docs = new BitSet(salePrices.size());
+        for (Long id : ids) {
+            Integer doc = docsById.get(id);
+            if (doc != null) {
+                docs.set(doc);
+            }
+        }
+        return docs;
+    }
+
+    private BitSet docsInPriceRange(Double min, Double max) {
+        BigDecimal lower = min != null ? BigDecimal.valueOf(min) : null;
+        BigDecimal upper = max != null ? BigDecimal.valueOf(max) : null;
+        BitSet docs = new BitSet(salePrices.size());
+        for (int doc = all.nextSetBit(0); doc >= 0; doc = all.nextSetBit(doc + 1)) {
+            BigDecimal price = salePrices.get(doc);
+            if (price != null
+                    && (lower == null || price.compareTo(lower) >= 0)
+                    && (upper == null || price.compareTo(upper) <= 0)) {
+                docs.set(doc);
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * Substring match on the color, like the SQL filter: "pink" also selects "Baby Pink".
+     */
+    private BitSet docsWithColorLike(String color) {
+        String needle = color.toLowerCase(Locale.ROOT);
+        BitSet docs = new BitSet(salePrices.size());
+        for (Map.Entry<String, BitSet> value : colors.entrySet()) {
+            if (value.getKey().toLowerCase(Locale.ROOT).contains(needle)) {
+                docs.or(value.getValue());
+            }
+        }
+        return docs;
+    }
+
+    private static int priceBucket(BigDecimal price) {
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            if (price.compareTo(BigDecimal.valueOf(PRICE_BOUNDS[i])) < 0) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDS.length;
+    }
+
+    /**
+     * "0-1000", "1000-5000", ..., "25000+" (lower bound inclusive, upper bound exclusive).
+     */
+    private static String priceRangeLabel(int bucket) {
+        int lower = bucket == 0 ? 0 : PRICE_BOUNDS[bucket - 1];
+        return bucket == PRICE_BOUNDS.length ? lower + "+" : lower + "-" + PRICE_BOUNDS[bucket];
+    }
+}
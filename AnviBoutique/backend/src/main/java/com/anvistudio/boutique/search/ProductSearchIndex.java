@@ -0,0 +1,352 @@
+package com.anvistudio.boutique.search;
+
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over available products with BM25 ranking.
+ * Replaces the LOWER(...) LIKE '%kw%' table scans of the old searchByKeyword query.
+ *
+ * Indexed fields (with weights applied to the term frequency): name, productTags, category, productColor and sku.
+ * Every query term also matches indexed terms it is a prefix of, so partial words work while typing.
+ * Built once at startup and kept up to date from {@link CatalogChangedEvent}s after each commit.
+ */
+@Component
+public class ProductSearchIndex {
+
+    // BM25 parameters (standard defaults)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field weights
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float TAGS_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float COLOR_WEIGHT = 1.5f;
+    private static final float SKU_WEIGHT = 1.0f;
+
+    // A prefix match ("sar" -> "saree") scores lower than an exact term match
+    private static final double PREFIX_MATCH_FACTOR = 0.7;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (productId -> weighted term frequency); sorted so prefix lookups are a subMap range
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // productId -> (term -> weighted term frequency), needed to remove a document again
+    private final Map<Long, Map<String, Float>> documents = new HashMap<>();
+    private final Map<Long, Float> documentLengths = new HashMap<>();
+    private double totalLength;
+    private volatile boolean ready;
+    // Single-product changes made while reload() reads the catalog, replayed on top of what it read
+    private List<Runnable> changesDuringReload;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Builds the index from the database once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        reload();
+        System.out.println("SEARCH INFO: Product search index built with " + size() + " products.");
+    }
+
+    /**
+     * Keeps the index in sync with committed catalog changes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.getType()) {
+            case SAVED:
+                upsert(event.getProduct());
+                break;
+            case DELETED:
+                remove(event.getProductId());
+                break;
+            case BULK_UPDATED:
+                reload();
+                break;
+        }
+    }
+
+    /**
+     * True once the startup build has completed; until then callers should fall back to the database.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the whole catalog from the database and replaces the index content with it.
+     * The catalog is read without holding the lock, so searches keep being served meanwhile; changes that
+     * arrive during the load may be missing from it and are applied again on top of the new content.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            changesDuringReload = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Product> products = null;
+        try {
+            products = productRepository.findAll();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (products != null) {
+                    rebuild(products);
+                    changesDuringReload.forEach(Runnable::run);
+                }
+                changesDuringReload = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole index content.
+     */
+    public void rebuild(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            for (Product product : products) {
+                addDocument(product);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or re-indexes a product. Unavailable products are removed, since customers never see them.
+     */
+    public void upsert(Product product) {
+        apply(() -> {
+            removeDocument(product.getId());
+            addDocument(product);
+        });
+    }
+
+    public void remove(Long productId) {
+        apply(() -> removeDocument(productId));
+    }
+
+    /**
+     * Returns the ids of the best matching products, highest BM25 score first.
+     */
+    public List<Long> search(String query, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        return topIds(score(query), limit);
+    }
+
+    /**
+     * Returns the ids of all products matching every term of the query (exactly or as a prefix), unranked.
+     * Used to filter listings by keyword, where totals and facet counts have to cover every match, and
+     * "red silk saree" should not list everything that is red.
+     */
+    public Set<Long> matchingIds(String query) {
+        List<String> queryTerms = SearchTokenizer.tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<Long> matches = null;
+            for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+                Set<Long> termMatches = new HashSet<>();
+                int expansions = 0;
+                for (Map<Long, Float> termPostings
+                        : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true).values()) {
+                    if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    termMatches.addAll(termPostings.keySet());
+                }
+                if (matches == null) {
+                    matches = termMatches;
+                } else {
+                    matches.retainAll(termMatches);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> score(String query) {
+        List<String> queryTerms = SearchTokenizer.tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return Collections.emptyMap();
+            }
+            double averageLength = totalLength / documentCount;
+
+            for (String queryTerm : queryTerms) {
+                // Exact term first, then the terms it is a prefix of
+                NavigableMap<String, Map<Long, Float>> matches =
+                        postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true);
+                int expansions = 0;
+                for (Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+                    if (expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    double factor = match.getKey().equals(queryTerm) ? 1.0 : PREFIX_MATCH_FACTOR;
+                    scoreTerm(match.getValue(), documentCount, averageLength, factor, scores);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores;
+    }
+
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals (callers hold the appropriate lock)
+    // ---------------------------------------------------------------------
+
+    private void scoreTerm(Map<Long, Float> termPostings, int documentCount, double averageLength,
+                           double factor, Map<Long, Double> scores) {
+        int documentFrequency = termPostings.size();
+        double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+        for (Map.Entry<Long, Float> posting : termPostings.entrySet()) {
+            double tf = posting.getValue();
+            double length = documentLengths.get(posting.getKey());
+            double termScore = idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * length / averageLength));
+            scores.merge(posting.getKey(), termScore * factor, Double::sum);
+        }
+    }
+
+    private void addDocument(Product product) {
+        if (product.getId() == null || !Boolean.TRUE.equals(product.getIsAvailable())) {
+            return;
+        }
+
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, product.getName(), NAME_WEIGHT);
+        addField(terms, product.getProductTags(), TAGS_WEIGHT);
+        addField(terms, product.getCategory(), CATEGORY_WEIGHT);
+        addField(terms, product.getProductColor(), COLOR_WEIGHT);
+        addField(terms, product.getSku(), SKU_WEIGHT);
+
+        float length = 0;
+        for (Map.Entry<String, Float> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(product.getId(), term.getValue());
+            length += term.getValue();
+        }
+
+        documents.put(product.getId(), terms);
+        documentLengths.put(product.getId(), length);
+        totalLength += length;
+    }
+
+    private void removeDocument(Long productId) {
+        Map<String, Float> terms = documents.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Float> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= documentLengths.remove(productId);
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String token : SearchTokenizer.tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    private static List<Long> topIds(Map<Long, Double> scores, int limit) {
+        // Min-heap of the best "limit" entries; ties broken by the newer (higher) id
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(
+                (a, b) -> a.getValue().equals(b.getValue())
+                        ? Long.compare(a.getKey(), b.getKey())
+                        : Double.compare(a.getValue(), b.getValue()));
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            best.offer(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ids.add(best.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+}
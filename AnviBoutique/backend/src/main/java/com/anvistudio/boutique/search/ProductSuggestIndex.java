@@ -0,0 +1,405 @@
+package com.anvistudio.boutique.search;
+
+import com.anvistudio.boutique.dto.SuggestionDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typo-tolerant autocomplete over product names, categories and productTags.
+ *
+ * Every distinct word of the catalog is indexed by its character trigrams ("lehenga" -> "  l", " le", "leh", ...).
+ * A query word is matched against the words sharing the most trigrams with it (Jaccard similarity), so
+ * misspellings such as "lehnga", "kurthi" or "dupata" still find "lehenga", "kurti" and "dupatta".
+ * The last query word is also matched as a prefix, since it is usually still being typed.
+ *
+ * Lookups read an immutable snapshot that is swapped atomically, so they never lock and never touch the database.
+ * A single product change only adjusts that product's contribution to the suggestions and rebuilds the snapshot
+ * in memory when the suggestions actually change; only bulk updates reload the catalog.
+ */
+@Component
+public class ProductSuggestIndex {
+
+    private static final double MIN_WORD_SIMILARITY = 0.3;
+    private static final double PREFIX_SIMILARITY_FACTOR = 0.9;
+    private static final int MAX_CANDIDATE_WORDS = 50;
+
+    private final ProductRepository productRepository;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Guarded by this: suggestion key -> products contributing it, and product id -> the keys it contributes
+    private final Map<String, Suggestion> suggestionsByKey = new LinkedHashMap<>();
+    private final Map<Long, List<String>> keysByProduct = new HashMap<>();
+
+    public ProductSuggestIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Builds the index from the database once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        reload();
+        System.out.println("SEARCH INFO: Suggestion index built with " + snapshot.entries.size() + " entries.");
+    }
+
+    /**
+     * Keeps the index in sync with committed catalog changes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.getType()) {
+            case SAVED:
+                upsert(event.getProduct());
+                break;
+            case DELETED:
+                remove(event.getProductId());
+                break;
+            case BULK_UPDATED:
+                reload();
+                break;
+        }
+    }
+
+    /**
+     * Reloads the whole catalog from the database. Holds the monitor while reading, so single-product
+     * changes wait for it instead of being overwritten; lookups are not blocked.
+     */
+    public synchronized void reload() {
+        rebuild(productRepository.findAll());
+    }
+
+    /**
+     * Replaces the index content with the available products and swaps in a new snapshot.
+     */
+    public synchronized void rebuild(List<Product> products) {
+        suggestionsByKey.clear();
+        keysByProduct.clear();
+        for (Product product : products) {
+            add(product);
+        }
+        publish();
+    }
+
+    /**
+     * Re-indexes one product. Changes that do not touch its name, category, tags or availability
+     * (prices, stock, ratings) leave the snapshot as it is.
+     */
+    public synchronized void upsert(Product product) {
+        List<String> previous = keysByProduct.getOrDefault(product.getId(), List.of());
+        if (previous.equals(keysOf(product))) {
+            return;
+        }
+        subtract(product.getId());
+        add(product);
+        publish();
+    }
+
+    public synchronized void remove(Long productId) {
+        if (subtract(productId)) {
+            publish();
+        }
+    }
+    /**
+     * Returns up to {@code limit} completions for the partially typed query, best first.
+     */
+    public List<SuggestionDTO> suggest(String query, int limit) {
+        List<String> queryWords = SearchTokenizer.tokenize(query);
+        Snapshot current = snapshot;
+        if (queryWords.isEmpty() || limit <= 0 || current.entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // entry id -> best similarity per query word
+        Map<Integer, double[]> matches = new HashMap<>();
+        for (int q = 0; q < queryWords.size(); q++) {
+            boolean isLastWord = q == queryWords.size() - 1;
+            for (Map.Entry<Integer, Double> word : current.similarWords(queryWords.get(q), isLastWord).entrySet()) {
+                for (int entryId : current.wordEntries.get(word.getKey())) {
+                    double[] perWord = matches.computeIfAbsent(entryId, id -> new double[queryWords.size()]);
+                    perWord[q] = Math.max(perWord[q], word.getValue());
+                }
+            }
+        }
+
+        List<ScoredEntry> scored = new ArrayList<>(matches.size());
+        for (Map.Entry<Integer, double[]> match : matches.entrySet()) {
+            Entry entry = current.entries.get(match.getKey());
+            double similarity = 0;
+            int matchedWords = 0;
+            for (double wordSimilarity : match.getValue()) {
+                similarity += wordSimilarity;
+                if (wordSimilarity > 0) {
+                    matchedWords++;
+                }
+            }
+            // Entries matching every query word rank first, then by similarity, then by popularity
+            double score = matchedWords * 10
+                    + similarity / queryWords.size()
+                    + 0.05 * Math.log1p(entry.productCount)
+                    + (SuggestionDTO.TYPE_CATEGORY.equals(entry.type) ? 0.05 : 0);
+            scored.add(new ScoredEntry(entry, score));
+        }
+        scored.sort((a, b) -> Double.compare(b.score, a.score));
+
+        List<SuggestionDTO> suggestions = new ArrayList<>(Math.min(limit, scored.size()));
+        for (ScoredEntry scoredEntry : scored) {
+            if (suggestions.size() == limit) {
+                break;
+            }
+            Entry entry = scoredEntry.entry;
+            suggestions.add(new SuggestionDTO(entry.text, entry.type, entry.productId, entry.productCount));
+        }
+        return suggestions;
+    }
+
+    // ---------------------------------------------------------------------
+    // Contributions (callers hold the monitor)
+    // ---------------------------------------------------------------------
+
+    private void add(Product product) {
+        List<String> keys = new ArrayList<>();
+        forEachSuggestion(product, (key, text, type) -> {
+            suggestionsByKey.computeIfAbsent(key, k -> new Suggestion(text, type)).productIds.add(product.getId());
+            keys.add(key);
+        });
+        if (!keys.isEmpty()) {
+            keysByProduct.put(product.getId(), keys);
+        }
+    }
+
+    private boolean subtract(Long productId) {
+        List<String> keys = keysByProduct.remove(productId);
+        if (keys == null) {
+            return false;
+        }
+        for (String key : keys) {
+            Suggestion suggestion = suggestionsByKey.get(key);
+            suggestion.productIds.remove(productId);
+            if (suggestion.productIds.isEmpty()) {
+                suggestionsByKey.remove(key);
+            }
+        }
+        return true;
+    }
+
+    private void publish() {
+        List<Entry> entries = new ArrayList<>(suggestionsByKey.size());
+        for (Suggestion suggestion : suggestionsByKey.values()) {
+            Long productId = SuggestionDTO.TYPE_PRODUCT.equals(suggestion.type) ? suggestion.productIds.get(0) : null;
+            entries.add(new Entry(suggestion.text, suggestion.type, productId, suggestion.productIds.size()));
+        }
+        snapshot = Snapshot.build(entries);
+    }
+
+    private static List<String> keysOf(Product product) {
+        List<String> keys = new ArrayList<>();
+        forEachSuggestion(product, (key, text, type) -> keys.add(key));
+        return keys;
+    }
+
+    /**
+     * The suggestions an available product contributes: its category, its name and each of its tags.
+     */
+    private static void forEachSuggestion(Product product, SuggestionConsumer action) {
+        if (product.getId() == null || !Boolean.TRUE.equals(product.getIsAvailable())) {
+            return;
+        }
+        accept(action, product.getCategory(), SuggestionDTO.TYPE_CATEGORY);
+        accept(action, product.getName(), SuggestionDTO.TYPE_PRODUCT);
+        if (product.getProductTags() != null) {
+            for (String tag : product.getProductTags().split(",")) {
+                accept(action, tag, SuggestionDTO.TYPE_TAG);
+            }
+        }
+    }
+
+    private static void accept(SuggestionConsumer action, String text, String type) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String display = text.trim();
+        action.accept(type + ":" + String.join(" ", SearchTokenizer.tokenize(display)), display, type);
+    }
+
+    private interface SuggestionConsumer {
+        void accept(String key, String text, String type);
+    }
+
+    /**
+     * One suggestion with the products contributing it (a product id once per contribution).
+     */
+    private static final class Suggestion {
+        final String text;
+        final String type;
+        final List<Long> productIds = new ArrayList<>();
+
+        Suggestion(String text, String type) {
+            this.text = text;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Character trigrams of a word, padded so that word starts and ends are significant.
+     */
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    // ---------------------------------------------------------------------
+    // Snapshot
+    // ---------------------------------------------------------------------
+
+    private static final class Entry {
+        final String text;
+        final String type;
+        final Long productId;
+        final int productCount;
+
+        Entry(String text, String type, Long productId, int productCount) {
+            this.text = text;
+            this.type = type;
+            this.productId = productId;
+            this.productCount = productCount;
+        }
+    }
+
+    private static final class ScoredEntry {
+        final Entry entry;
+        final double score;
+
+        ScoredEntry(Entry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(List.of(), List.of(), new int[0], List.of(), Map.of());
+
+        final List<Entry> entries;
+        final List<String> words;
+        final int[] wordTrigramCounts;            // word id -> number of distinct trigrams
+        final List<int[]> wordEntries;            // word id -> entry ids containing it
+        final Map<String, int[]> trigramWords;    // trigram -> word ids containing it
+
+        private Snapshot(List<Entry> entries, List<String> words, int[] wordTrigramCounts,
+                         List<int[]> wordEntries, Map<String, int[]> trigramWords) {
+            this.entries = entries;
+            this.words = words;
+            this.wordTrigramCounts = wordTrigramCounts;
+            this.wordEntries = wordEntries;
+            this.trigramWords = trigramWords;
+        }
+
+        static Snapshot build(List<Entry> entries) {
+            Map<String, List<Integer>> entriesByWord = new LinkedHashMap<>();
+            for (int entryId = 0; entryId < entries.size(); entryId++) {
+                for (String word : new LinkedHashSet<>(SearchTokenizer.tokenize(entries.get(entryId).text))) {
+                    entriesByWord.computeIfAbsent(word, w -> new ArrayList<>()).add(entryId);
+                }
+            }
+
+            List<String> words = new ArrayList<>(entriesByWord.keySet());
+            int[] wordTrigramCounts = new int[words.size()];
+            List<int[]> wordEntries = new ArrayList<>(words.size());
+            Map<String, List<Integer>> wordsByTrigram = new HashMap<>();
+            for (int wordId = 0; wordId < words.size(); wordId++) {
+                String word = words.get(wordId);
+                Set<String> grams = trigrams(word);
+                wordTrigramCounts[wordId] = grams.size();
+                wordEntries.add(toArray(entriesByWord.get(word)));
+                for (String gram : grams) {
+                    wordsByTrigram.computeIfAbsent(gram, g -> new ArrayList<>()).add(wordId);
+                }
+            }
+
+            Map<String, int[]> trigramWords = new HashMap<>(wordsByTrigram.size() * 2);
+            wordsByTrigram.forEach((gram, ids) -> trigramWords.put(gram, toArray(ids)));
+            return new Snapshot(List.copyOf(entries), List.copyOf(words), wordTrigramCounts, wordEntries, trigramWords);
+        }
+
+        /**
+         * Vocabulary words similar to the query word, with their similarity in (0, 1].
+         */
+        Map<Integer, Double> similarWords(String queryWord, boolean asPrefix) {
+            Set<String> queryGrams = trigrams(queryWord);
+            Map<Integer, Integer> sharedCounts = new HashMap<>();
+            for (String gram : queryGrams) {
+                int[] wordIds = trigramWords.get(gram);
+                if (wordIds != null) {
+                    for (int wordId : wordIds) {
+                        sharedCounts.merge(wordId, 1, Integer::sum);
+                    }
+                }
+            }
+
+            List<Map.Entry<Integer, Double>> candidates = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> shared : sharedCounts.entrySet()) {
+                String word = words.get(shared.getKey());
+                double similarity = jaccard(shared.getValue(), queryGrams.size(), wordTrigramCounts[shared.getKey()]);
+                if (asPrefix && word.length() > queryWord.length()) {
+                    // Compare against the start of the word only: "lehn" vs "lehe(nga)"
+                    double prefixSimilarity = word.startsWith(queryWord)
+                            ? 1.0
+                            : similarity(queryGrams, trigrams(word.substring(0, queryWord.length()))) * PREFIX_SIMILARITY_FACTOR;
+                    similarity = Math.max(similarity, prefixSimilarity);
+                }
+                if (similarity >= MIN_WORD_SIMILARITY) {
+                    candidates.add(Map.entry(shared.getKey(), similarity));
+                }
+            }
+
+            candidates.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+            Map<Integer, Double> best = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Double> candidate : candidates.subList(0, Math.min(candidates.size(), MAX_CANDIDATE_WORDS))) {
+                best.put(candidate.getKey(), candidate.getValue());
+            }
+            return best;
+        }
+
+        private static double similarity(Set<String> a, Set<String> b) {
+            int shared = 0;
+            for (String gram : a) {
+                if (b.contains(gram)) {
+                    shared++;
+                }
+            }
+            return jaccard(shared, a.size(), b.size());
+        }
+
+        private static double jaccard(int shared, int sizeA, int sizeB) {
+            return (double) shared / (sizeA + sizeB - shared);
+        }
+
+        private static int[] toArray(List<Integer> values) {
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+    }
+}
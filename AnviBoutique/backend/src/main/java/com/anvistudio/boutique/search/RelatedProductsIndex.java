@@ -0,0 +1,328 @@
+package com.anvistudio.boutique.search;
+
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed "You may also like" lists for the product detail page.
+ *
+ * Related products come from the same category and are ranked by attribute similarity:
+ * same color, shared productTags and a close sale price. Each product's top {@value #RELATED_LIMIT}
+ * are kept ready, so a product view is a single map lookup instead of loading the whole category.
+ *
+ * On a save or delete only the lists of the affected category are touched: a product's own list is
+ * recomputed, and the other products only re-rank if the changed product enters or leaves their list.
+ * Stock reservations only re-rank a product when it sells out or comes back into stock.
+ */
+@Component
+public class RelatedProductsIndex {
+
+    private static final int RELATED_LIMIT = 4;
+
+    // Similarity weights
+    private static final double COLOR_WEIGHT = 2.0;
+    private static final double TAGS_WEIGHT = 3.0;
+    private static final double PRICE_WEIGHT = 2.0;
+    private static final double IN_STOCK_WEIGHT = 0.5;
+
+    private final ProductRepository productRepository;
+
+    // Guarded by "this"; related lists are immutable and can be read without locking
+    private final Map<Long, Features> features = new HashMap<>();
+    private final Map<String, Set<Long>> idsByCategory = new HashMap<>();
+    private final Map<Long, List<Features>> related = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public RelatedProductsIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Builds the index from the database once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild(productRepository.findAll());
+        System.out.println("SEARCH INFO: Related products index built for " + related.size() + " products.");
+    }
+
+    /**
+     * Keeps the index in sync with committed catalog changes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.getType()) {
+            case SAVED:
+                upsert(event.getProduct());
+                break;
+            case DELETED:
+                remove(event.getProductId());
+                break;
+            case BULK_UPDATED:
+                rebuild(productRepository.findAll());
+                break;
+        }
+    }
+
+    /**
+     * Patches the stock of reserved or released products; see {@link #applyStockChanges}.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        applyStockChanges(event.getStockChanges());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean contains(Long productId) {
+        return related.containsKey(productId);
+    }
+
+    /**
+     * The precomputed related products of the given product, best match first.
+     */
+    public List<ProductCardDTO> related(Long productId) {
+        List<Features> matches = related.get(productId);
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        List<ProductCardDTO> cards = new ArrayList<>(matches.size());
+        for (Features match : matches) {
+            cards.add(match.card);
+        }
+        return cards;
+    }
+
+    public synchronized void rebuild(List<Product> products) {
+        features.clear();
+        idsByCategory.clear();
+        related.clear();
+        for (Product product : products) {
+            if (isIndexable(product)) {
+                Features f = new Features(product);
+                features.put(f.id, f);
+                idsByCategory.computeIfAbsent(f.category, c -> new LinkedHashSet<>()).add(f.id);
+            }
+        }
+        for (Features f : features.values()) {
+            related.put(f.id, topMatches(f));
+        }
+        ready = true;
+    }
+
+    /**
+     * Adds or re-indexes a product. Unavailable products are removed, since customers never see them.
+     */
+    public synchronized void upsert(Product product) {
+        removeInternal(product.getId());
+        if (!isIndexable(product)) {
+            return;
+        }
+
+        insertInternal(new Features(product));
+    }
+
+    public synchronized void remove(Long productId) {
+        removeInternal(productId);
+    }
+
+    /**
+     * Applies stock changes (productId -> delta). Only a product that sells out or comes back into stock
+     * gets a new card and is re-ranked, since the lists only depend on whether it is in stock.
+     */
+    public synchronized void applyStockChanges(Map<Long, Integer> stockChanges) {
+        for (Map.Entry<Long, Integer> change : stockChanges.entrySet()) {
+            Features current = features.get(change.getKey());
+            if (current == null) {
+                continue;
+            }
+            Features updated = current.withStock(current.stock + change.getValue());
+            if (updated.inStock == current.inStock) {
+                // Lists may keep the old instance: its card and score are unchanged
+                features.put(updated.id, updated);
+            } else {
+                removeInternal(updated.id);
+                insertInternal(updated);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals (callers hold the lock)
+    // ---------------------------------------------------------------------
+
+    private void insertInternal(Features changed) {
+        features.put(changed.id, changed);
+        Set<Long> categoryIds = idsByCategory.computeIfAbsent(changed.category, c -> new LinkedHashSet<>());
+        categoryIds.add(changed.id);
+        related.put(changed.id, topMatches(changed));
+
+        // The new product may now belong in a neighbour's list
+        for (Long id : categoryIds) {
+            if (!id.equals(changed.id)) {
+                offer(features.get(id), changed);
+            }
+        }
+    }
+
+    private void removeInternal(Long productId) {
+        Features removed = features.remove(productId);
+        related.remove(productId);
+        if (removed == null) {
+            return;
+        }
+        Set<Long> categoryIds = idsByCategory.get(removed.category);
+        categoryIds.remove(productId);
+        if (categoryIds.isEmpty()) {
+            idsByCategory.remove(removed.category);
+            return;
+        }
+        // Only lists that contained the removed product need a new candidate
+        for (Long id : categoryIds) {
+            if (containsProduct(related.get(id), productId)) {
+                related.put(id, topMatches(features.get(id)));
+            }
+        }
+    }
+
+    /**
+     * Inserts the candidate into the owner's list if it ranks among the top matches.
+     */
+    private void offer(Features owner, Features candidate) {
+        List<Features> current = related.get(owner.id);
+        double score = similarity(owner, candidate);
+        if (current.size() == RELATED_LIMIT && score <= similarity(owner, current.get(current.size() - 1))) {
+            return;
+        }
+        List<Features> updated = new ArrayList<>(current);
+        updated.add(candidate);
+        updated.sort(byScoreFor(owner));
+        if (updated.size() > RELATED_LIMIT) {
+            updated.remove(updated.size() - 1);
+        }
+        related.put(owner.id, List.copyOf(updated));
+    }
+
+    private List<Features> topMatches(Features owner) {
+        List<Features> candidates = new ArrayList<>();
+        for (Long id : idsByCategory.getOrDefault(owner.category, Collections.emptySet())) {
+            if (!id.equals(owner.id)) {
+                candidates.add(features.get(id));
+            }
+        }
+        candidates.sort(byScoreFor(owner));
+        return List.copyOf(candidates.subList(0, Math.min(candidates.size(), RELATED_LIMIT)));
+    }
+
+    /**
+     * Highest similarity first; ties go to the newer (higher id) product.
+     */
+    private static Comparator<Features> byScoreFor(Features owner) {
+        return Comparator.<Features>comparingDouble(candidate -> similarity(owner, candidate)).reversed()
+                .thenComparing(candidate -> candidate.id, Comparator.reverseOrder());
+    }
+
+    private static double similarity(Features a, Features b) {
+        double score = 0;
+        if (a.color != null && a.color.equals(b.color)) {
+            score += COLOR_WEIGHT;
+        }
+        if (!a.tags.isEmpty() && !b.tags.isEmpty()) {
+            int shared = 0;
+            for (String tag : a.tags) {
+                if (b.tags.contains(tag)) {
+                    shared++;
+                }
+            }
+            score += TAGS_WEIGHT * shared / (a.tags.size() + b.tags.size() - shared);
+        }
+        if (a.price > 0 && b.price > 0) {
+            // 1.0 for the same price, 0.5 when one costs e^1 (~2.7x) the other
+            score += PRICE_WEIGHT / (1 + Math.abs(Math.log(a.price / b.price)));
+        }
+        if (b.inStock) {
+            score += IN_STOCK_WEIGHT;
+        }
+        return score;
+    }
+
+    private static boolean containsProduct(List<Features> list, Long productId) {
+        if (list != null) {
+            for (Features f : list) {
+                if (f.id.equals(productId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIndexable(Product product) {
+        return product.getId() != null && product.getCategory() != null && Boolean.TRUE.equals(product.getIsAvailable());
+    }
+
+    /**
+     * The attributes used for similarity plus the card served to the client.
+     */
+    private static final class Features {
+        final Long id;
+        final String category;
+        final String color;
+        final Set<String> tags;
+        final double price;
+        final int stock;
+        final boolean inStock;
+        final ProductCardDTO card;
+
+        Features(Product product) {
+            this.card = ProductCardDTO.from(product);
+            this.id = product.getId();
+            this.category = product.getCategory();
+            this.color = product.getProductColor() != null
+                    ? product.getProductColor().trim().toLowerCase(Locale.ROOT) : null;
+            this.tags = new HashSet<>(SearchTokenizer.tokenize(product.getProductTags()));
+            BigDecimal salePrice = card.getSalePrice();
+            this.price = salePrice != null ? salePrice.doubleValue() : 0;
+            this.stock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+            this.inStock = card.isInStock();
+        }
+
+        private Features(Features base, int stock) {
+            this.id = base.id;
+            this.category = base.category;
+            this.color = base.color;
+            this.tags = base.tags;
+            this.price = base.price;
+            this.stock = stock;
+            this.inStock = stock > 0;
+            this.card = this.inStock == base.inStock ? base.card : base.card.withInStock(this.inStock);
+        }
+
+        Features withStock(int stock) {
+            return new Features(this, stock);
+        }
+    }
+}
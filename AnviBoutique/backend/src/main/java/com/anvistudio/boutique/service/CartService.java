@@ -1,31 +1,68 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.dto.CartDTO;
 import com.anvistudio.boutique.model.CartItem;
+import com.anvistudio.boutique.model.GuestCartItem;
 import com.anvistudio.boutique.model.Product;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.repository.CartItemRepository;
+import com.anvistudio.boutique.repository.GuestCartItemRepository;
 import com.anvistudio.boutique.repository.ProductRepository;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.authentication.event.LogoutSuccessEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Shopping cart operations. Cart lines are addressed by product id, since a product is in a user's cart
+ * at most once. With boutique.cart.write-behind.enabled the cart is kept in {@link CartWriteBehindStore}
+ * and written to the database in batches; checkout always reads the flushed rows.
+ *
+ * Visitors who are not logged in get a guest cart identified by an anonymous token cookie
+ * ({@value #GUEST_CART_COOKIE}); it is merged into the user's cart in one statement when they log in.
+ */
 @Service
 public class CartService {
 
+    public static final String GUEST_CART_COOKIE = "GUEST_CART";
+    public static final Duration GUEST_CART_MAX_AGE = Duration.ofDays(30);
+
     private final CartItemRepository cartItemRepository;
+    private final GuestCartItemRepository guestCartItemRepository;
     private final UserService userService;
     private final ProductRepository productRepository;
+    private final CartWriteBehindStore writeBehindStore;
 
-    public CartService(CartItemRepository cartItemRepository, UserService userService, ProductRepository productRepository) {
+    public CartService(CartItemRepository cartItemRepository, GuestCartItemRepository guestCartItemRepository,
+                       UserService userService, ProductRepository productRepository,
+                       CartWriteBehindStore writeBehindStore) {
         this.cartItemRepository = cartItemRepository;
+        this.guestCartItemRepository = guestCartItemRepository;
         this.userService = userService;
         this.productRepository = productRepository;
+        this.writeBehindStore = writeBehindStore;
     }
 
     /**
-     * Adds a product to the cart or increments quantity if it exists.
+     * Adds a product to the cart or increments quantity if it exists, with a single upsert.
      * @param username The username of the user.
      * @param productId The ID of the product.
      * @param quantity The amount to add (usually 1).
@@ -34,33 +71,38 @@ public class CartService {
     public void addProductToCart(String username, Long productId, int quantity) {
         if (quantity <= 0) return;
 
-        User user = userService.findUserByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("User not found."));
-
-        Optional<CartItem> existingItem = cartItemRepository.findByUserIdAndProductId(user.getId(), productId);
+        User user = findUser(username);
 
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            cartItemRepository.save(item);
-        } else {
-            Product product = productRepository.findById(productId)
-                    .orElseThrow(() -> new IllegalArgumentException("Product not found."));
+        if (writeBehindStore.isEnabled()) {
+            if (!productRepository.existsById(productId)) {
+                throw new IllegalArgumentException("Product not found.");
+            }
+            writeBehindStore.add(user.getId(), productId, quantity);
+            return;
+        }
 
-            CartItem newItem = new CartItem();
-            newItem.setUser(user);
-            newItem.setProduct(product);
-            newItem.setQuantity(quantity);
-            cartItemRepository.save(newItem);
+        try {
+            cartItemRepository.upsertQuantity(user.getId(), productId, quantity);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Product not found.");
         }
     }
 
     /**
-     * Updates the quantity of a specific item in the cart.
+     * Updates the quantity of a product in the user's cart; zero or less removes it.
      */
     @Transactional
-    public void updateItemQuantity(Long itemId, int quantity) {
-        CartItem item = cartItemRepository.findById(itemId)
+    public void updateItemQuantity(String username, Long productId, int quantity) {
+        User user = findUser(username);
+
+        if (writeBehindStore.isEnabled()) {
+            if (!writeBehindStore.setQuantity(user.getId(), productId, quantity)) {
+                throw new IllegalArgumentException("Cart item not found.");
+            }
+            return;
+        }
+
+        CartItem item = cartItemRepository.findByUserIdAndProductId(user.getId(), productId)
                 .orElseThrow(() -> new IllegalArgumentException("Cart item not found."));
 
         if (quantity <= 0) {
@@ -72,28 +114,82 @@ public class CartService {
     }
 
     /**
-     * Removes an item completely from the cart.
+     * Removes a product completely from the user's cart.
      */
     @Transactional
-    public void removeItem(Long itemId) {
-        cartItemRepository.deleteById(itemId);
+    public void removeItem(String username, Long productId) {
+        User user = findUser(username);
+
+        if (writeBehindStore.isEnabled()) {
+            writeBehindStore.setQuantity(user.getId(), productId, 0);
+            return;
+        }
+
+        cartItemRepository.findByUserIdAndProductId(user.getId(), productId)
+                .ifPresent(cartItemRepository::delete);
     }
 
     /**
-     * Retrieves all cart items for a specific user.
+     * Retrieves all cart items for a specific user, with their products already loaded.
+     * Used by checkout, so pending write-behind changes are flushed first.
      */
     public List<CartItem> getCartItems(Long userId) {
-        return cartItemRepository.findByUserId(userId);
+        writeBehindStore.flushUser(userId);
+        return cartItemRepository.findWithProductByUserId(userId);
+    }
+
+    /**
+     * The user's cart with line totals and the grand total, read in a single query.
+     */
+    @Transactional(readOnly = true)
+    public CartDTO getCart(Long userId) {
+        if (!writeBehindStore.isEnabled()) {
+            return CartDTO.of(cartItemRepository.findWithProductByUserId(userId));
+        }
+
+        // In-memory quantities plus one query for their products
+        Map<Long, Integer> quantities = writeBehindStore.getQuantities(userId);
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+        List<CartItem> items = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product != null) {
+                items.add(cartLine(product, line.getValue()));
+            }
+        }
+        return CartDTO.of(items);
     }
 
     /**
      * Calculates the total price for all items in the cart.
-     * This method automatically uses the updated CartItem.getTotalPrice() calculation.
      */
-    public double getCartTotal(Long userId) {
-        return getCartItems(userId).stream()
-                .mapToDouble(CartItem::getTotalPrice)
-                .sum();
+    public BigDecimal getCartTotal(Long userId) {
+        return getCart(userId).getTotal();
+    }
+
+    /**
+     * Exact total of already loaded cart items, in paise.
+     */
+    public static long getTotalPaise(List<CartItem> items) {
+        long total = 0;
+        for (CartItem item : items) {
+            total = Math.addExact(total, item.getTotalPricePaise());
+        }
+        return total;
+    }
+
+    /**
+     * Quantity per product of already loaded cart items.
+     */
+    public static Map<Long, Integer> getQuantities(List<CartItem> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
     }
 
     /**
@@ -101,6 +197,164 @@ public class CartService {
      */
     @Transactional
     public void clearCart(Long userId) {
+        if (writeBehindStore.isEnabled()) {
+            writeBehindStore.discard(userId);
+        }
         cartItemRepository.deleteByUserId(userId);
     }
+
+    /**
+     * Writes a write-behind cart to the database when its owner logs out.
+     */
+    public void flushCart(String username) {
+        if (writeBehindStore.isEnabled()) {
+            userService.findUserByUsername(username)
+                    .ifPresent(user -> writeBehindStore.flushAndEvict(user.getId()));
+        }
+    }
+
+    /**
+     * Form logout (/logout) goes through Spring Security rather than AuthRestController.
+     */
+    @EventListener
+    public void onLogout(LogoutSuccessEvent event) {
+        flushCart(event.getAuthentication().getName());
+    }
+
+    // =========================================================================
+    // GUEST CART
+    // =========================================================================
+
+    /**
+     * The guest cart for the token; empty if there is no token yet.
+     */
+    @Transactional(readOnly = true)
+    public CartDTO getGuestCart(String guestToken) {
+        if (guestToken == null) {
+            return CartDTO.of(List.of());
+        }
+        List<CartItem> items = new ArrayList<>();
+        for (GuestCartItem guestItem : guestCartItemRepository.findWithProductByGuestToken(guestToken)) {
+            items.add(cartLine(guestItem.getProduct(), guestItem.getQuantity()));
+        }
+        return CartDTO.of(items);
+    }
+
+    @Transactional
+    public void addProductToGuestCart(String guestToken, Long productId, int quantity) {
+        if (quantity <= 0) return;
+
+        try {
+            guestCartItemRepository.upsertQuantity(guestToken, productId, quantity);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Product not found.");
+        }
+    }
+
+    @Transactional
+    public void updateGuestItemQuantity(String guestToken, Long productId, int quantity) {
+        GuestCartItem item = guestCartItemRepository.findByGuestTokenAndProductId(guestToken, productId)
+                .orElseThrow(() -> new IllegalArgumentException("Cart item not found."));
+
+        if (quantity <= 0) {
+            guestCartItemRepository.delete(item);
+        } else {
+            item.setQuantity(quantity);
+            item.setLastActivity(new Date());
+            guestCartItemRepository.save(item);
+        }
+    }
+
+    @Transactional
+    public void removeGuestItem(String guestToken, Long productId) {
+        guestCartItemRepository.findByGuestTokenAndProductId(guestToken, productId)
+                .ifPresent(guestCartItemRepository::delete);
+    }
+
+    /**
+     * Moves all guest cart lines into the user's cart (adding quantities for products already there)
+     * and deletes the guest cart, in one transaction.
+     * @return the number of guest lines merged.
+     */
+    @Transactional
+    public int mergeGuestCart(String guestToken, Long userId) {
+        // A write-behind cart is written out first and reloaded with the merged lines on next access
+        writeBehindStore.flushAndEvict(userId);
+        cartItemRepository.mergeGuestCart(userId, guestToken);
+        return guestCartItemRepository.deleteByGuestToken(guestToken);
+    }
+
+    /**
+     * Merges the visitor's guest cart on every successful login, through the form login as well as
+     * /api/auth/login. The guest token is read from the cookie of the current request.
+     */
+    @EventListener
+    @Transactional
+    public void onLogin(AuthenticationSuccessEvent event) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return;
+        }
+        String guestToken = guestTokenFrom(servletAttributes.getRequest());
+        if (guestToken == null) {
+            return;
+        }
+        userService.findUserByUsername(event.getAuthentication().getName()).ifPresent(user -> {
+            int merged = mergeGuestCart(guestToken, user.getId());
+            if (merged > 0) {
+                System.out.println("CART INFO: Merged " + merged + " guest cart lines into the cart of user " + user.getId() + ".");
+            }
+        });
+    }
+
+    /**
+     * Daily removal of guest carts not used for longer than the cookie that identifies them lives
+     * (the cookie is renewed whenever the guest adds to the cart). Whole carts are removed, never single lines.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeAbandonedGuestCarts() {
+        Date cutoff = new Date(System.currentTimeMillis() - GUEST_CART_MAX_AGE.toMillis());
+        int deleted = guestCartItemRepository.deleteInactiveSince(cutoff);
+        if (deleted > 0) {
+            System.out.println("CART INFO: Removed " + deleted + " lines of abandoned guest carts.");
+        }
+    }
+
+    /**
+     * The guest token of the request's cookie, or null if there is none or it is not a token we issued.
+     */
+    public static String guestTokenFrom(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (GUEST_CART_COOKIE.equals(cookie.getName())) {
+                return validGuestToken(cookie.getValue());
+            }
+        }
+        return null;
+    }
+
+    public static String validGuestToken(String token) {
+        if (token == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(token).toString().equals(token) ? token : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static CartItem cartLine(Product product, int quantity) {
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private User findUser(String username) {
+        return userService.findUserByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found."));
+    }
 }
\ No newline at end of file
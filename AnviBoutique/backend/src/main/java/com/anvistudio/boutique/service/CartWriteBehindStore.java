@@ -0,0 +1,507 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional write-behind storage for shopping carts (boutique.cart.write-behind.enabled=true).
+ *
+ * Active carts live in memory keyed by user id. Each mutation only updates the in-memory cart and appends one
+ * line to a local journal; the changes are coalesced per (user, product) and written to cart_items in JDBC
+ * batches on a schedule, and for a single user on logout and checkout.
+ *
+ * Journal lines record absolute values ("S user product quantity", "C user" for a cleared cart), so replaying
+ * entries that were already flushed is harmless. The journal is opened with DSYNC, so a mutation returns only
+ * once its line is on disk and survives a host or power failure, not just a JVM crash. A flush first rotates
+ * the journal and deletes the rotated file only after the batch has committed; on startup any leftover journal
+ * is replayed into the database.
+ */
+@Component
+public class CartWriteBehindStore {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long IDLE_EVICTION_MILLIS = 30 * 60 * 1000L;
+
+    private static final String LOAD_SQL = "SELECT product_id, quantity FROM cart_items WHERE user_id = ? ORDER BY date_added, id";
+    private static final String CLEAR_SQL = "DELETE FROM cart_items WHERE user_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?";
+    // One upsert per line thanks to the unique (user_id, product_id) constraint. Products deleted since
+    // the change was journaled select no row and are skipped instead of failing the whole batch.
+    private static final String UPSERT_SQL = "INSERT INTO cart_items (user_id, product_id, quantity, date_added) "
+            + "SELECT ?, id, ?, ? FROM products WHERE id = ? ON DUPLICATE KEY UPDATE quantity = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Path journalPath;
+    private final Path flushingPath;
+
+    private final Map<Long, UserCart> carts = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final Object journalLock = new Object();
+    private BufferedWriter journal; // Guarded by journalLock
+
+    public CartWriteBehindStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                @Value("${boutique.cart.write-behind.enabled:false}") boolean enabled,
+                                @Value("${boutique.cart.write-behind.journal:cart-journal.log}") String journalFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.journalPath = Paths.get(journalFile).toAbsolutePath();
+        this.flushingPath = Paths.get(journalFile + ".flushing").toAbsolutePath();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays a journal left behind by a crash. Runs even when write-behind is disabled, so switching
+     * the mode off never loses changes that had not been flushed yet.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        synchronized (flushLock) {
+            synchronized (journalLock) {
+                closeJournal();
+            }
+            Map<Long, PendingCart> recovered = new LinkedHashMap<>();
+            replay(flushingPath, recovered);
+            replay(journalPath, recovered);
+            if (recovered.isEmpty()) {
+                return;
+            }
+            write(new ArrayList<>(recovered.values()));
+            deleteQuietly(flushingPath);
+            deleteQuietly(journalPath);
+            System.out.println("CART INFO: Recovered unflushed changes of " + recovered.size() + " carts from the journal.");
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Cart access
+    // ---------------------------------------------------------------------
+
+    /**
+     * The user's cart as productId -> quantity, in the order the products were added.
+     */
+    public Map<Long, Integer> getQuantities(Long userId) {
+        while (true) {
+            UserCart cart = loadedCart(userId);
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    cart.touch();
+                    return new LinkedHashMap<>(cart.quantities);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the quantity to the product's line, creating it if needed.
+     */
+    public void add(Long userId, Long productId, int quantity) {
+        while (true) {
+            UserCart cart = loadedCart(userId);
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    setLocked(cart, productId, cart.quantities.getOrDefault(productId, 0) + quantity);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the product's quantity; zero or less removes the line.
+     * @return false if the product is not in the cart.
+     */
+    public boolean setQuantity(Long userId, Long productId, int quantity) {
+        while (true) {
+            UserCart cart = loadedCart(userId);
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    if (!cart.quantities.containsKey(productId)) {
+                        return false;
+                    }
+                    setLocked(cart, productId, quantity);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the user's cart in memory and in the journal and forgets it. The caller deletes the
+     * database rows in its own transaction (see CartService#clearCart).
+     */
+    public void discard(Long userId) {
+        synchronized (flushLock) {
+            UserCart cart = carts.remove(userId);
+            if (cart != null) {
+                synchronized (cart) {
+                    cart.evicted = true;
+                }
+            }
+            appendToJournal("C " + userId);
+        }
+    }
+
+    /**
+     * Drops a deleted product from every cart in memory; ProductService already removed its rows.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getType() != CatalogChangedEvent.Type.DELETED) {
+            return;
+        }
+        for (UserCart cart : carts.values()) {
+            synchronized (cart) {
+                cart.quantities.remove(event.getProductId());
+                cart.pending.remove(event.getProductId());
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Flushing
+    // ---------------------------------------------------------------------
+
+    /**
+     * Writes all pending changes in one batch, then evicts carts that have been idle for a while.
+     */
+    @Scheduled(fixedDelayString = "${boutique.cart.write-behind.flush-interval-ms:5000}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            rotateJournal();
+            List<PendingCart> batch = new ArrayList<>();
+            for (UserCart cart : carts.values()) {
+                synchronized (cart) {
+                    if (cart.isDirty()) {
+                        batch.add(cart.drain());
+                    }
+                }
+            }
+            if (writeOrRestore(batch)) {
+                deleteQuietly(flushingPath);
+            }
+            evictIdleCarts();
+        }
+    }
+
+    /**
+     * Writes the pending changes of one user now, e.g. before checkout reads the cart from the database.
+     * The journal is left alone; its entries for this user are rewritten harmlessly by the next full flush.
+     * @throws IllegalStateException if the changes could not be written, so checkout does not go on with
+     * the stale cart_items rows (the changes stay pending and are retried).
+     */
+    public void flushUser(Long userId) {
+        if (enabled && !tryFlushUser(userId)) {
+            throw new IllegalStateException("Your latest cart changes could not be saved yet. Please try again in a moment.");
+        }
+    }
+
+    /**
+     * Flushes and forgets the user's cart, called on logout and before a guest cart is merged into it.
+     */
+    public void flushAndEvict(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            tryFlushUser(userId); // On failure the cart stays dirty and is kept in memory below
+            UserCart cart = carts.get(userId);
+            if (cart != null) {
+                synchronized (cart) {
+                    if (!cart.isDirty()) {
+                        cart.evicted = true;
+                        carts.remove(userId, cart);
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        synchronized (journalLock) {
+            closeJournal();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals
+    // ---------------------------------------------------------------------
+
+    private boolean tryFlushUser(Long userId) {
+        synchronized (flushLock) {
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                return true;
+            }
+            PendingCart pending;
+            synchronized (cart) {
+                if (!cart.isDirty()) {
+                    return true;
+                }
+                pending = cart.drain();
+            }
+            return writeOrRestore(List.of(pending));
+        }
+    }
+
+    private UserCart loadedCart(Long userId) {
+        UserCart cart = carts.computeIfAbsent(userId, UserCart::new);
+        synchronized (cart) {
+            if (!cart.loaded) {
+                jdbcTemplate.query(LOAD_SQL, rs -> {
+                    cart.quantities.put(rs.getLong("product_id"), rs.getInt("quantity"));
+                }, userId);
+                cart.loaded = true;
+            }
+        }
+        return cart;
+    }
+
+    /**
+     * Applies the change in memory and journals it; the caller holds the cart's lock.
+     */
+    private void setLocked(UserCart cart, Long productId, int quantity) {
+        int newQuantity = Math.max(quantity, 0);
+        appendToJournal("S " + cart.userId + " " + productId + " " + newQuantity);
+        if (newQuantity == 0) {
+            cart.quantities.remove(productId);
+        } else {
+            cart.quantities.put(productId, newQuantity);
+        }
+        cart.pending.put(productId, newQuantity);
+        cart.touch();
+    }
+
+    /**
+     * Writes the batch; on failure the changes go back into their carts so the next flush retries them.
+     */
+    private boolean writeOrRestore(List<PendingCart> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            write(batch);
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("CART ERROR: Flushing " + batch.size() + " carts failed, will retry: " + e.getMessage());
+            for (PendingCart pending : batch) {
+                UserCart cart = carts.get(pending.userId);
+                if (cart != null) {
+                    synchronized (cart) {
+                        cart.restore(pending);
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private void write(List<PendingCart> batch) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        for (PendingCart pending : batch) {
+            if (pending.cleared) {
+                clears.add(new Object[]{pending.userId});
+            }
+            for (Map.Entry<Long, Integer> change : pending.changes.entrySet()) {
+                if (change.getValue() == 0) {
+                    deletes.add(new Object[]{pending.userId, change.getKey()});
+                } else {
+                    upserts.add(new Object[]{pending.userId, change.getValue(), now, change.getKey(), change.getValue()});
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(CLEAR_SQL, clears);
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            for (int from = 0; from < upserts.size(); from += BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts.subList(from, Math.min(from + BATCH_SIZE, upserts.size())));
+            }
+        });
+    }
+
+    private void evictIdleCarts() {
+        long idleSince = System.currentTimeMillis() - IDLE_EVICTION_MILLIS;
+        for (UserCart cart : carts.values()) {
+            synchronized (cart) {
+                if (!cart.isDirty() && cart.lastAccess < idleSince) {
+                    cart.evicted = true;
+                    carts.remove(cart.userId, cart);
+                }
+            }
+        }
+    }
+
+    private void appendToJournal(String line) {
+        synchronized (journalLock) {
+            try {
+                if (journal == null) {
+                    journal = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+                }
+                journal.write(line);
+                journal.newLine();
+                journal.flush(); // One synchronous write per line (DSYNC)
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the cart journal.", e);
+            }
+        }
+    }
+
+    /**
+     * Moves the current journal aside for the flush in progress. If a previous flush failed, its file is
+     * still there and the current journal is appended to it instead.
+     */
+    private void rotateJournal() {
+        synchronized (journalLock) {
+            closeJournal();
+            try {
+                if (!Files.exists(journalPath)) {
+                    return;
+                }
+                if (Files.exists(flushingPath)) {
+                    Files.write(flushingPath, Files.readAllBytes(journalPath),
+                            StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+                    Files.delete(journalPath);
+                } else {
+                    Files.move(journalPath, flushingPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not rotate the cart journal.", e);
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("CART ERROR: Could not close the cart journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    private static void replay(Path path, Map<Long, PendingCart> recovered) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2 && parts[0].equals("C")) {
+                    PendingCart pending = recovered.computeIfAbsent(Long.parseLong(parts[1]), PendingCart::new);
+                    pending.cleared = true;
+                    pending.changes.clear();
+                } else if (parts.length == 4 && parts[0].equals("S")) {
+                    recovered.computeIfAbsent(Long.parseLong(parts[1]), PendingCart::new)
+                            .changes.put(Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+                }
+                // Anything else is a line torn by a crash mid-write and is skipped
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Could not replay the cart journal " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("CART ERROR: Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Changes not yet written to cart_items: an optional clear, then productId -> quantity (0 removes).
+     */
+    private static final class PendingCart {
+        final Long userId;
+        boolean cleared;
+        Map<Long, Integer> changes = new LinkedHashMap<>();
+
+        PendingCart(Long userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * A cart held in memory. All fields are guarded by the instance's lock.
+     */
+    private static final class UserCart {
+        final Long userId;
+        final Map<Long, Integer> quantities = new LinkedHashMap<>();
+        Map<Long, Integer> pending = new LinkedHashMap<>();
+        boolean loaded;
+        boolean evicted;
+        long lastAccess = System.currentTimeMillis();
+
+        UserCart(Long userId) {
+            this.userId = userId;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        boolean isDirty() {
+            return !pending.isEmpty();
+        }
+
+        PendingCart drain() {
+            PendingCart drained = new PendingCart(userId);
+            drained.changes = pending;
+            pending = new LinkedHashMap<>();
+            return drained;
+        }
+
+        /**
+         * Puts back changes whose write failed; changes made since then are newer and win.
+         */
+        void restore(PendingCart failed) {
+            for (Map.Entry<Long, Integer> change : failed.changes.entrySet()) {
+                pending.putIfAbsent(change.getKey(), change.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductReviewsChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.search.RelatedProductsIndex;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic catalog and per-product version numbers, used as HTTP ETags so unchanged product
+ * responses can be answered with 304 Not Modified without touching the database.
+ *
+ * Versions are bumped after the change has committed. The counter starts at the startup time,
+ * so tags handed out before a restart never match afterwards.
+ */
+@Service
+public class CatalogVersionService {
+
+    private final RelatedProductsIndex relatedProductsIndex;
+    private final AtomicLong catalogVersion = new AtomicLong(System.currentTimeMillis());
+    private final Map<Long, Long> productVersions = new ConcurrentHashMap<>();
+    // Version of every product that has not changed since startup or the last bulk update
+    private volatile long baselineVersion = catalogVersion.get();
+
+    public CatalogVersionService(RelatedProductsIndex relatedProductsIndex) {
+        this.relatedProductsIndex = relatedProductsIndex;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getType() == CatalogChangedEvent.Type.BULK_UPDATED) {
+            baselineVersion = catalogVersion.incrementAndGet();
+            productVersions.clear();
+        } else {
+            productVersions.put(event.getProductId(), catalogVersion.incrementAndGet());
+        }
+    }
+
+    /**
+     * Review changes show up on the product page (and in ratings), so they count as a product change.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReviewsChanged(ProductReviewsChangedEvent event) {
+        productVersions.put(event.getProductId(), catalogVersion.incrementAndGet());
+    }
+
+    /**
+     * The product page shows the stock left, so reserved or released stock counts as a product change.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        for (Long productId : event.getProductIds()) {
+            productVersions.put(productId, catalogVersion.incrementAndGet());
+        }
+    }
+
+    /**
+     * Changes whenever anything in the catalog changes.
+     */
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /**
+     * Changes whenever the given product (or its reviews) changes.
+     */
+    public long getProductVersion(Long productId) {
+        return productVersions.getOrDefault(productId, baselineVersion);
+    }
+
+    /**
+     * Strong ETag for responses derived from the whole catalog (listings, search, categories).
+     */
+    public String catalogETag() {
+        return "\"c" + getCatalogVersion() + "\"";
+    }
+
+    /**
+     * Strong ETag for a product page: the product's own version plus the versions of the related products
+     * shown with it. Falls back to the catalog version while the related products are not served from the index.
+     */
+    public String productETag(Long productId) {
+        if (!relatedProductsIndex.isReady() || !relatedProductsIndex.contains(productId)) {
+            return "\"p" + productId + "-c" + getCatalogVersion() + "\"";
+        }
+        StringBuilder etag = new StringBuilder("\"p").append(productId).append('-').append(getProductVersion(productId));
+        for (ProductCardDTO related : relatedProductsIndex.related(productId)) {
+            etag.append('.').append(related.getId()).append('-').append(getProductVersion(related.getId()));
+        }
+        return etag.append('"').toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.CategoryDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the shop categories, derived from {@code Product.category} instead of a hard-coded list.
+ * Counts and price ranges come from one GROUP BY query; the result is cached and only recomputed
+ * after the catalog changes, so requests never hit the database for it.
+ */
+@Service
+public class CategoryService {
+
+    private final ProductRepository productRepository;
+    private volatile Registry registry;
+
+    public CategoryService(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * All categories with at least one available product, by name.
+     */
+    public List<CategoryDTO> getCategories() {
+        return registry().categories;
+    }
+
+    /**
+     * Just the category names, for navigation and filter lists.
+     */
+    public List<String> getCategoryNames() {
+        return registry().names;
+    }
+
+    /**
+     * Drops the cached registry once a catalog change is committed; the next read recomputes it.
+     * Synchronized with the rebuild in registry(), so a rebuild that read the catalog before the commit
+     * cannot store its result after this has cleared it.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        registry = null;
+    }
+
+    private Registry registry() {
+        Registry current = registry;
+        if (current == null) {
+            synchronized (this) {
+                current = registry;
+                if (current == null) {
+                    current = new Registry(productRepository.findCategorySummaries());
+                    registry = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static final class Registry {
+        final List<CategoryDTO> categories;
+        final List<String> names;
+
+        Registry(List<CategoryDTO> categories) {
+            this.categories = List.copyOf(categories);
+            this.names = categories.stream().map(CategoryDTO::getName).collect(Collectors.toUnmodifiableList());
+        }
+    }
+}
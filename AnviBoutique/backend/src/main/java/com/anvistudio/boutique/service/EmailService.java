@@ -1,5 +1,7 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.event.OrderPlacedEvent;
+import com.anvistudio.boutique.model.OrderItem;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.model.VerificationToken;
 import com.anvistudio.boutique.model.VerificationToken.TokenType;
@@ -7,6 +9,8 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.text.SimpleDateFormat;
+
 /**
  * Service for sending live emails using the configured SMTP server.
  */
@@ -66,4 +70,34 @@ public class EmailService {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends the order confirmation to the customer.
+     * Unlike the OTP email, failures are thrown so the order event pipeline can retry.
+     */
+    public void sendOrderConfirmation(OrderPlacedEvent order) {
+        StringBuilder lines = new StringBuilder();
+        for (OrderItem item : order.getItems()) {
+            lines.append(String.format("- %dx %s: ₹ %.2f%n",
+                    item.getQuantity(), item.getProductName(), item.getLineTotal().doubleValue()));
+        }
+
+        SimpleMailMessage mailMessage = new SimpleMailMessage();
+        mailMessage.setFrom("Anvi Studio Support <bharath161099@gmail.com>");
+        mailMessage.setTo(order.getCustomerEmail());
+        mailMessage.setSubject("Anvi Studio: Your order #" + order.getOrderId() + " is confirmed");
+        mailMessage.setText(String.format(
+                "Dear Customer,\n\n" +
+                        "Thank you for shopping with Anvi Studio! We have received your order #%d placed on %s.\n\n" +
+                        "%s\n" +
+                        "Total: ₹ %.2f\n\n" +
+                        "We will let you know when it ships. You can follow your order under My Orders.",
+                order.getOrderId(),
+                new SimpleDateFormat("dd MMM yyyy").format(order.getOrderDate()),
+                lines,
+                order.getTotalAmount().doubleValue()));
+
+        javaMailSender.send(mailMessage);
+        System.out.println("SMTP: Sent order confirmation for order " + order.getOrderId() + " to " + order.getCustomerEmail());
+    }
+}
@@ -0,0 +1,396 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Virtual waiting room for flash-sale products (Product.flashSale).
+ *
+ * A checkout containing a flash-sale product only reaches stock reservation and Stripe with an admission pass
+ * for that product. Passes are handed out per product by a token bucket that refills at
+ * boutique.flash-sale.admissions-per-second and never holds more tokens than there are units left; buyers who
+ * were admitted but have not reserved yet also count against the units left, with the quantity in their cart.
+ * A pass is handed out while at least one unit is left, so the last buyer admitted may find fewer units than they
+ * want. Everyone else waits in a bounded FIFO queue and is told their (approximate) position. The queue advances
+ * when buyers poll again and once per refresh, which reloads the stock of the flash-sale products with one query;
+ * in between, reserved and released stock is applied from the stock change events without querying.
+ *
+ * The waiting room is kept in memory, so it is per application instance.
+ */
+@Service
+public class FlashSaleService {
+
+    // Waiting buyers who stopped polling for this long lose their place
+    private static final long QUEUE_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    // Room.admit results besides 0 (admitted) and a queue position
+    private static final long SOLD_OUT = -1;
+    private static final long QUEUE_FULL = -2;
+
+    /**
+     * Outcome of asking for admission.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Admission {
+
+        private static final Admission ADMITTED = new Admission(true, false, 0, 0, null);
+
+        private final boolean admitted;
+        private final boolean soldOut;
+        private final long queuePosition;    // Set when waiting
+        private final int retryAfterSeconds; // Set when waiting or the queue is full
+        private final String error;          // Set when sold out or the queue is full
+    }
+
+    private final ProductRepository productRepository;
+    private final double admissionsPerSecond;
+    private final int maxQueueSize;
+    private final long admissionWindowMillis;
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    public FlashSaleService(ProductRepository productRepository,
+                            @Value("${boutique.flash-sale.admissions-per-second:5}") double admissionsPerSecond,
+                            @Value("${boutique.flash-sale.max-queue-size:5000}") int maxQueueSize,
+                            @Value("${boutique.flash-sale.admission-window-seconds:120}") long admissionWindowSeconds) {
+        this.productRepository = productRepository;
+        this.admissionsPerSecond = admissionsPerSecond;
+        this.maxQueueSize = maxQueueSize;
+        this.admissionWindowMillis = TimeUnit.SECONDS.toMillis(admissionWindowSeconds);
+    }
+
+    /**
+     * Lets the user into the checkout of the given products (productId -> quantity), or puts them in the queue
+     * of each flash-sale product they are not admitted for yet. Products not in flash-sale mode need no admission.
+     */
+    public Admission admit(Long userId, Map<Long, Integer> quantities) {
+        long now = System.currentTimeMillis();
+        long position = 0;
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Room room = rooms.get(line.getKey());
+            if (room == null) {
+                continue;
+            }
+            long roomPosition;
+            synchronized (room) {
+                roomPosition = room.admit(userId, line.getValue(), now);
+            }
+            if (roomPosition == SOLD_OUT) {
+                return new Admission(false, true, 0, 0, "This flash sale is sold out.");
+            }
+            if (roomPosition == QUEUE_FULL) {
+                return new Admission(false, false, 0, retryAfterSeconds(maxQueueSize),
+                        "Too many shoppers are waiting for this flash sale. Please try again shortly.");
+            }
+            position = Math.max(position, roomPosition);
+        }
+        if (position == 0) {
+            return Admission.ADMITTED;
+        }
+        return new Admission(false, false, position, retryAfterSeconds(position), null);
+    }
+
+    /**
+     * The admitted user's stock is now held: their pass lasts as long as the hold and no longer counts
+     * against the units left (the hold already took them out of stock).
+     */
+    public void reserved(Long userId, Collection<Long> productIds, Date holdExpiresAt) {
+        forEachPass(userId, productIds, pass -> {
+            pass.reserved = true;
+            pass.expiresAt = Math.max(pass.expiresAt, holdExpiresAt.getTime());
+        });
+    }
+
+    /**
+     * Whether the user may place an order for these products (holds an unexpired pass for each flash-sale product).
+     */
+    public boolean hasPass(Long userId, Collection<Long> productIds) {
+        long now = System.currentTimeMillis();
+        for (Long productId : productIds) {
+            Room room = rooms.get(productId);
+            if (room == null) {
+                continue;
+            }
+            synchronized (room) {
+                Pass pass = room.passes.get(userId);
+                if (pass == null || pass.expiresAt < now) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives up the user's passes: the order was placed, or the admitted checkout could not reserve the stock.
+     */
+    public void leave(Long userId, Collection<Long> productIds) {
+        for (Long productId : productIds) {
+            Room room = rooms.get(productId);
+            if (room != null) {
+                synchronized (room) {
+                    room.passes.remove(userId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads which products are in flash-sale mode and their stock, then admits waiting buyers as far as
+     * tokens and stock allow.
+     */
+    @Scheduled(fixedDelayString = "${boutique.flash-sale.refresh-ms:1000}")
+    public void refresh() {
+        Map<Long, Integer> stock = new HashMap<>();
+        for (Object[] row : productRepository.findFlashSaleStock()) {
+            stock.put((Long) row[0], (Integer) row[1]);
+        }
+
+        for (Map.Entry<Long, Integer> product : stock.entrySet()) {
+            updateStock(product.getKey(), product.getValue());
+        }
+        // Products taken out of flash-sale mode (or deleted): nobody needs admission for them any more
+        if (rooms.keySet().retainAll(stock.keySet())) {
+            System.out.println("CHECKOUT INFO: Flash-sale waiting rooms now open: " + rooms.keySet() + ".");
+        }
+    }
+
+    /**
+     * Opens or closes the room of a saved or deleted product right away, from the event's product.
+     * Bulk updates do not switch flash-sale mode and are left to the next refresh.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getType() == CatalogChangedEvent.Type.DELETED) {
+            closeRoom(event.getProductId());
+        } else if (event.getType() == CatalogChangedEvent.Type.SAVED) {
+            Product product = event.getProduct();
+            if (Boolean.TRUE.equals(product.getFlashSale()) && Boolean.TRUE.equals(product.getIsAvailable())) {
+                updateStock(product.getId(), product.getStockQuantity() != null ? product.getStockQuantity() : 0);
+            } else {
+                closeRoom(product.getId());
+            }
+        }
+    }
+
+    /**
+     * Stock of a flash-sale product was reserved or put back: apply the change to the units left right away,
+     * so a sell-out is reported (and released stock admits the next buyers) without waiting for the next refresh.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Integer> change : event.getStockChanges().entrySet()) {
+            Room room = rooms.get(change.getKey());
+            if (room != null) {
+                synchronized (room) {
+                    room.stock += change.getValue();
+                    room.advance(now);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals
+    // ---------------------------------------------------------------------
+
+    /**
+     * Sets the units left of the product's room, opening the room if needed.
+     */
+    private void updateStock(Long productId, int stock) {
+        long now = System.currentTimeMillis();
+        Room room = rooms.computeIfAbsent(productId, id -> {
+            System.out.println("CHECKOUT INFO: Flash-sale waiting room opened for product " + id + ".");
+            return new Room(stock, now);
+        });
+        synchronized (room) {
+            room.stock = stock;
+            room.advance(now);
+        }
+    }
+
+    private void closeRoom(Long productId) {
+        if (rooms.remove(productId) != null) {
+            System.out.println("CHECKOUT INFO: Flash-sale waiting rooms now open: " + rooms.keySet() + ".");
+        }
+    }
+
+    private int retryAfterSeconds(long position) {
+        // Poll roughly when the turn is expected, but often enough not to be dropped as idle
+        long seconds = (long) Math.ceil(position / admissionsPerSecond);
+        return (int) Math.max(2, Math.min(seconds, TimeUnit.MILLISECONDS.toSeconds(QUEUE_IDLE_MILLIS) / 4));
+    }
+
+    private void forEachPass(Long userId, Collection<Long> productIds, Consumer<Pass> action) {
+        for (Long productId : productIds) {
+            Room room = rooms.get(productId);
+            if (room == null) {
+                continue;
+            }
+            synchronized (room) {
+                Pass pass = room.passes.get(userId);
+                if (pass != null) {
+                    action.accept(pass);
+                }
+            }
+        }
+    }
+
+    private static class Pass {
+        long expiresAt;
+        int units;           // Quantity in the buyer's cart, counted against the units left until reserved
+        boolean reserved;
+
+        Pass(long expiresAt, int units) {
+            this.expiresAt = expiresAt;
+            this.units = units;
+        }
+    }
+
+    private static class Waiting {
+        final Long userId;
+        final long ticket;
+        long lastSeen;
+        int units;
+
+        Waiting(Long userId, long ticket, long lastSeen, int units) {
+            this.userId = userId;
+            this.ticket = ticket;
+            this.lastSeen = lastSeen;
+            this.units = units;
+        }
+    }
+
+    /**
+     * Waiting room of one product. Guarded by its own monitor.
+     */
+    private class Room {
+        int stock;           // Units left in products.stock_quantity (held units already taken out)
+        double tokens;
+        long refilledAt;
+        long nextTicket;
+        final Map<Long, Pass> passes = new HashMap<>();
+        final Map<Long, Waiting> waiting = new HashMap<>();
+        final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+
+        Room(int stock, long now) {
+            this.stock = stock;
+            this.tokens = Math.min(stock, admissionsPerSecond); // One second's worth, not the whole stock at once
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 if admitted, the queue position if waiting, SOLD_OUT or QUEUE_FULL.
+         */
+        long admit(Long userId, int units, long now) {
+            expirePasses(now);
+            Pass pass = passes.get(userId);
+            if (pass != null) {
+                pass.expiresAt = Math.max(pass.expiresAt, now + admissionWindowMillis);
+                if (!pass.reserved) {
+                    pass.units = units;
+                }
+                return 0;
+            }
+            if (stock <= 0 && unreservedUnits() == 0) {
+                return SOLD_OUT;
+            }
+
+            Waiting entry = waiting.get(userId);
+            if (entry == null) {
+                if (queue.isEmpty() && takeToken(now)) {
+                    passes.put(userId, new Pass(now + admissionWindowMillis, units));
+                    return 0;
+                }
+                if (waiting.size() >= maxQueueSize) {
+                    return QUEUE_FULL;
+                }
+                entry = new Waiting(userId, nextTicket++, now, units);
+                waiting.put(userId, entry);
+                queue.addLast(entry);
+            }
+            entry.lastSeen = now;
+            entry.units = units;
+
+            advance(now);
+            if (passes.containsKey(userId)) {
+                return 0;
+            }
+            // Idle entries ahead are only dropped when they reach the head, so this can overstate the position
+            return entry.ticket - queue.getFirst().ticket + 1;
+        }
+
+        /**
+         * Admits buyers from the head of the queue while tokens and stock allow.
+         */
+        void advance(long now) {
+            expirePasses(now);
+            while (!queue.isEmpty()) {
+                Waiting head = queue.getFirst();
+                if (now - head.lastSeen > QUEUE_IDLE_MILLIS) {
+                    queue.removeFirst();
+                    waiting.remove(head.userId);
+                    continue;
+                }
+                if (!takeToken(now)) {
+                    return;
+                }
+                queue.removeFirst();
+                waiting.remove(head.userId);
+                passes.put(head.userId, new Pass(now + admissionWindowMillis, head.units));
+            }
+        }
+
+        private boolean takeToken(long now) {
+            int available = stock - unreservedUnits();
+            tokens = Math.min(Math.max(available, 0), tokens + (now - refilledAt) / 1000.0 * admissionsPerSecond);
+            refilledAt = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        private int unreservedUnits() {
+            int units = 0;
+            for (Pass pass : passes.values()) {
+                if (!pass.reserved) {
+                    units += pass.units;
+                }
+            }
+            return units;
+        }
+
+        private void expirePasses(long now) {
+            Iterator<Pass> iterator = passes.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expiresAt < now) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
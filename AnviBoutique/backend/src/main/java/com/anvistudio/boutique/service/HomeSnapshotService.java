@@ -0,0 +1,121 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.HomeSnapshotDTO;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the landing page from an in-memory snapshot instead of querying (and serializing) the whole catalog
+ * for every visitor. The snapshot only holds size-limited lists of product cards and is regenerated after
+ * every committed catalog change. Stock reservations only patch the in-stock flag of the cards they touch.
+ * Categories come from {@link CategoryService}.
+ */
+@Service
+public class HomeSnapshotService {
+
+    private static final int NEW_ARRIVALS_LIMIT = 8;
+    private static final int SALE_ITEMS_LIMIT = 8;
+
+    private final ProductRepository productRepository;
+    private final AtomicLong version = new AtomicLong();
+    private volatile HomeSnapshotDTO snapshot;
+    // Stock of the products on the snapshot, kept up to date by stock changes; guarded by "this"
+    private final Map<Long, Integer> stockById = new HashMap<>();
+
+    public HomeSnapshotService(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Returns the current snapshot, building it on first use.
+     */
+    public HomeSnapshotDTO getSnapshot() {
+        HomeSnapshotDTO current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = rebuild();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Regenerates the snapshot once a product save/delete has been committed.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Applies reserved or released stock to the cards on the snapshot. A new snapshot (and version) is only
+     * published when one of them sold out or came back into stock.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onStockChanged(ProductStockChangedEvent event) {
+        HomeSnapshotDTO current = snapshot;
+        if (current == null) {
+            return;
+        }
+        boolean flipped = false;
+        for (Map.Entry<Long, Integer> change : event.getStockChanges().entrySet()) {
+            Integer before = stockById.get(change.getKey());
+            if (before != null) {
+                int after = before + change.getValue();
+                stockById.put(change.getKey(), after);
+                flipped |= (before > 0) != (after > 0);
+            }
+        }
+        if (flipped) {
+            snapshot = new HomeSnapshotDTO(version.incrementAndGet(),
+                    withCurrentStock(current.getNewArrivals()), withCurrentStock(current.getSaleItems()));
+        }
+    }
+
+    private List<ProductCardDTO> withCurrentStock(List<ProductCardDTO> cards) {
+        List<ProductCardDTO> patched = new ArrayList<>(cards.size());
+        for (ProductCardDTO card : cards) {
+            Integer stock = stockById.get(card.getId());
+            boolean inStock = stock != null && stock > 0;
+            patched.add(stock == null || card.isInStock() == inStock ? card : card.withInStock(inStock));
+        }
+        return patched;
+    }
+
+    private HomeSnapshotDTO rebuild() {
+        List<ProductCardDTO> newArrivals = productRepository.findNewArrivalCards(PageRequest.of(0, NEW_ARRIVALS_LIMIT));
+        List<ProductCardDTO> saleItems = productRepository.findSaleCards(PageRequest.of(0, SALE_ITEMS_LIMIT));
+
+        Set<Long> ids = new LinkedHashSet<>();
+        newArrivals.forEach(card -> ids.add(card.getId()));
+        saleItems.forEach(card -> ids.add(card.getId()));
+        stockById.clear();
+        if (!ids.isEmpty()) {
+            for (Object[] row : productRepository.findStockByIdIn(ids)) {
+                stockById.put((Long) row[0], (Integer) row[1]);
+            }
+        }
+
+        HomeSnapshotDTO rebuilt = new HomeSnapshotDTO(version.incrementAndGet(),
+                withCurrentStock(newArrivals), withCurrentStock(saleItems));
+        snapshot = rebuilt;
+        return rebuilt;
+    }
+}
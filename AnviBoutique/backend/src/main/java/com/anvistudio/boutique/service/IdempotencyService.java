@@ -0,0 +1,217 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.model.IdempotencyRecord;
+import com.anvistudio.boutique.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs mutating requests at most once per Idempotency-Key, so double submits and client retries after a
+ * timeout get the original response back instead of placing a second order.
+ *
+ * The first request with a key claims it by inserting an IN_PROGRESS record (unique per scope, user and key)
+ * in a short transaction of its own. Its work then runs in one transaction together with storing the
+ * response, so either both commit or neither does; a failed request releases the claim and may be retried.
+ * Stored responses are also kept in memory, so a replay on the same instance needs no database access;
+ * other instances find them in idempotency_records.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int MAX_CACHED_RESPONSES = 10_000;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate claimTemplate;
+    private final long ttlMillis;
+    private final long lockMillis;
+
+    // scope:userId:key -> stored response
+    private final Map<String, StoredResponse> responses = new ConcurrentHashMap<>();
+
+    private static class StoredResponse {
+        final String requestHash;
+        final int status;
+        final Map<String, String> body;
+        final long expiresAt;
+
+        StoredResponse(String requestHash, int status, Map<String, String> body, long expiresAt) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository, ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${boutique.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${boutique.idempotency.lock-seconds:60}") long lockSeconds) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.claimTemplate = new TransactionTemplate(transactionManager);
+        this.claimTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+        this.lockMillis = TimeUnit.SECONDS.toMillis(lockSeconds);
+    }
+
+    /**
+     * Runs the action in a transaction that is rolled back unless it returns a 2xx response.
+     * With a key, a successful response is stored and returned again for later requests with the same key;
+     * a request still running under the key, or an earlier use of it with a different body, gets 409.
+     * @param key the client's Idempotency-Key, or null to run without replay protection.
+     * @param request the request body, to detect a key reused for a different request.
+     */
+    public ResponseEntity<Map<String, String>> execute(String scope, Long userId, String key, Map<String, ?> request,
+                                                       Supplier<ResponseEntity<Map<String, String>>> action) {
+        if (key == null) {
+            return runInTransaction(null, action);
+        }
+        if (!isValidKey(key)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters."));
+        }
+
+        String requestHash = hash(request);
+        String cacheKey = scope + ':' + userId + ':' + key;
+        StoredResponse stored = responses.get(cacheKey);
+        if (stored != null && stored.expiresAt > System.currentTimeMillis()) {
+            return replay(stored, requestHash);
+        }
+
+        IdempotencyRecord claim;
+        try {
+            Date lockedUntil = new Date(System.currentTimeMillis() + lockMillis);
+            claim = claimTemplate.execute(status -> recordRepository.saveAndFlush(
+                    new IdempotencyRecord(scope, userId, key, requestHash, lockedUntil)));
+        } catch (DataIntegrityViolationException e) {
+            // The key is taken: by a finished request (replay it), a running one, or one that died holding it
+            IdempotencyRecord existing = recordRepository.findByScopeAndUserIdAndIdempotencyKey(scope, userId, key).orElse(null);
+            if (existing != null && existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse completed = toStoredResponse(existing);
+                cache(cacheKey, completed);
+                return replay(completed, requestHash);
+            }
+            if (existing != null && existing.getExpiresAt().getTime() < System.currentTimeMillis()
+                    && recordRepository.release(existing.getId(), IdempotencyRecord.Status.IN_PROGRESS) == 1) {
+                return execute(scope, userId, key, request, action);
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "A request with this " + HEADER + " is still being processed. Please retry shortly."));
+        }
+
+        ResponseEntity<Map<String, String>> response = null;
+        try {
+            response = runInTransaction(claim, action);
+        } finally {
+            if (response == null || !response.getStatusCode().is2xxSuccessful()) {
+                recordRepository.release(claim.getId(), IdempotencyRecord.Status.IN_PROGRESS);
+            }
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            cache(cacheKey, new StoredResponse(requestHash, response.getStatusCode().value(), response.getBody(),
+                    System.currentTimeMillis() + ttlMillis));
+        }
+        return response;
+    }
+
+    /**
+     * Whether the client's key can be used (not blank, at most {@value #MAX_KEY_LENGTH} characters).
+     */
+    public static boolean isValidKey(String key) {
+        return key != null && !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Removes stored responses past their TTL, and claims of requests that died without releasing them.
+     */
+    @Scheduled(fixedDelayString = "${boutique.idempotency.sweep-ms:3600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        responses.values().removeIf(stored -> stored.expiresAt < now);
+        int deleted = recordRepository.deleteExpired(new Date(now));
+        if (deleted > 0) {
+            System.out.println("CHECKOUT INFO: Removed " + deleted + " expired idempotency records.");
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals
+    // ---------------------------------------------------------------------
+
+    private ResponseEntity<Map<String, String>> runInTransaction(IdempotencyRecord claim,
+                                                                 Supplier<ResponseEntity<Map<String, String>>> action) {
+        return transactionTemplate.execute(status -> {
+            ResponseEntity<Map<String, String>> response = action.get();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                status.setRollbackOnly();
+                return response;
+            }
+            if (claim != null && recordRepository.complete(claim.getId(), response.getStatusCode().value(),
+                    objectMapper.writeValueAsString(response.getBody()), new Date(System.currentTimeMillis() + ttlMillis),
+                    IdempotencyRecord.Status.IN_PROGRESS, IdempotencyRecord.Status.COMPLETED) == 0) {
+                // The claim expired and a retry took the key over: let that one win instead of doing the work twice
+                status.setRollbackOnly();
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "A request with this " + HEADER + " is still being processed. Please retry shortly."));
+            }
+            return response;
+        });
+    }
+
+    private ResponseEntity<Map<String, String>> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", HEADER + " was already used for a different request."));
+        }
+        return ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true").body(stored.body);
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyRecord record) {
+        Map<String, String> body = objectMapper.readValue(record.getResponseBody(), new TypeReference<Map<String, String>>() {});
+        return new StoredResponse(record.getRequestHash(), record.getResponseStatus(), body, record.getExpiresAt().getTime());
+    }
+
+    private void cache(String cacheKey, StoredResponse stored) {
+        // Bounded; responses that do not fit are still replayed from the database
+        if (responses.size() < MAX_CACHED_RESPONSES) {
+            responses.put(cacheKey, stored);
+        }
+    }
+
+    private String hash(Map<String, ?> request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] json = objectMapper.writeValueAsString(new TreeMap<>(request)).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(digest.digest(json));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.anvistudio.boutique.model.NewsletterSubscription;
 import com.anvistudio.boutique.repository.CustomerRepository;
 import com.anvistudio.boutique.repository.NewsletterSubscriptionRepository;
 import com.anvistudio.boutique.repository.UserRepository; // New Import
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,12 @@ public class NotificationService {
     private final UserRepository userRepository;
     private final JavaMailSender javaMailSender;
 
+    // Longest product list in a consolidated sale email
+    private static final int MAX_BULK_SALE_ITEMS = 20;
+
+    @Value("${boutique.notifications.admin-email:bharath161099@gmail.com}")
+    private String adminEmail;
+
     public NotificationService(NewsletterSubscriptionRepository subscriptionRepository,
                                CustomerRepository customerRepository,
                                UserRepository userRepository, // Injected
@@ -160,4 +167,84 @@ public class NotificationService {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends one consolidated announcement for a batch of products that went on sale together
+     * (bulk import or sale event), instead of one email per product.
+     * @param products The products now on sale.
+     */
+    public void sendBulkSaleNotification(List<Product> products) {
+        if (products == null || products.isEmpty()) {
+            return;
+        }
+        Set<String> recipientEmails = getAllActiveSubscriberEmails();
+
+        if (recipientEmails.isEmpty()) {
+            System.out.println("NOTIFICATION: No active newsletter subscribers found.");
+            return;
+        }
+
+        String subject = String.format("✨ Exclusive Offer: %d New Products on Sale!", products.size());
+
+        StringBuilder items = new StringBuilder();
+        int listed = Math.min(products.size(), MAX_BULK_SALE_ITEMS);
+        for (int i = 0; i < listed; i++) {
+            Product product = products.get(i);
+            items.append(String.format("- %s (%s): ₹ %.2f, now %d%% off at ₹ %.2f%n",
+                    product.getName(),
+                    product.getCategory(),
+                    product.getPrice().doubleValue(),
+                    product.getDiscountPercent(),
+                    product.getDiscountedPrice().doubleValue()));
+        }
+        if (products.size() > listed) {
+            items.append(String.format("...and %d more!%n", products.size() - listed));
+        }
+
+        String body = "Hello valued customer,\n\n" +
+                "We are thrilled to announce new offers across our collection!\n\n" +
+                items +
+                "\nShop now before they sell out!\n" +
+                "[Link to Sale: http://localhost:8080/products?status=onSale]\n\n" +
+                "Thank you for being an Anvi Studio subscriber!";
+
+        // Send a separate email to each recipient
+        for (String email : recipientEmails) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom("Anvi Studio Offers <bharath161099@gmail.com>");
+            message.setTo(email);
+            message.setSubject(subject);
+            message.setText(body);
+
+            try {
+                javaMailSender.send(message);
+                System.out.println("NOTIFICATION: Sent bulk sale email to " + email);
+            } catch (Exception e) {
+                System.err.println("SMTP ERROR: Failed to send bulk sale email to " + email + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tells the admin that products are running out of stock.
+     * Failures are thrown so the order event pipeline can retry.
+     * @param products The products whose stock just fell to the low-stock level or below.
+     */
+    public void sendLowStockAlert(List<Product> products) {
+        StringBuilder items = new StringBuilder();
+        for (Product product : products) {
+            items.append(String.format("- %s (SKU %s, ID %d): %d left%n",
+                    product.getName(), product.getSku(), product.getId(), product.getStockQuantity()));
+        }
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("Anvi Studio Inventory <bharath161099@gmail.com>");
+        message.setTo(adminEmail);
+        message.setSubject(String.format("Low stock: %d product(s) need restocking", products.size()));
+        message.setText("The following products are running low after recent orders:\n\n" + items
+                + "\nRestock them from the admin inventory page.");
+
+        javaMailSender.send(message);
+        System.out.println("NOTIFICATION: Sent low stock alert for " + products.size() + " products to " + adminEmail);
+    }
+}
@@ -0,0 +1,152 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.config.AsyncConfig;
+import com.anvistudio.boutique.event.OrderPlacedEvent;
+import com.anvistudio.boutique.model.OrderItem;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.model.ProductSalesDaily;
+import com.anvistudio.boutique.repository.ProductRepository;
+import com.anvistudio.boutique.repository.ProductSalesDailyRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Post-order pipeline: side effects of a placed order, run after it has committed on the bounded
+ * order event executor (see {@link AsyncConfig}), so checkout does not wait for them. Each consumer
+ * is independent and retried with exponential backoff; a consumer that still fails is logged and
+ * does not affect the order or the other consumers.
+ *
+ * A failed attempt does not hold its executor thread while it backs off: the retry is handed to the
+ * application's TaskScheduler, which puts it back on the executor when it is due. A task that finds the
+ * executor's queue full is dropped and logged (the order itself is already placed); so are retries still
+ * waiting when the application shuts down.
+ *
+ * Stock itself is taken synchronously at checkout (StockReservationService); this only alerts on it.
+ */
+@Service
+public class OrderEventListener {
+
+    private static final int LOW_STOCK_THRESHOLD = 5;
+
+    private final EmailService emailService;
+    private final NotificationService notificationService;
+    private final ProductRepository productRepository;
+    private final ProductSalesDailyRepository salesDailyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor executor;
+    private final TaskScheduler retryScheduler;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public OrderEventListener(EmailService emailService, NotificationService notificationService,
+                              ProductRepository productRepository, ProductSalesDailyRepository salesDailyRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Qualifier(AsyncConfig.ORDER_EVENT_EXECUTOR) TaskExecutor executor,
+                              TaskScheduler retryScheduler,
+                              @Value("${boutique.orders.events.max-attempts:3}") int maxAttempts,
+                              @Value("${boutique.orders.events.retry-backoff-ms:1000}") long backoffMillis) {
+        this.emailService = emailService;
+        this.notificationService = notificationService;
+        this.productRepository = productRepository;
+        this.salesDailyRepository = salesDailyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.retryScheduler = retryScheduler;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Order confirmation email to the customer.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void sendConfirmation(OrderPlacedEvent event) {
+        withRetry("confirmation email", event, () -> emailService.sendOrderConfirmation(event));
+    }
+
+    /**
+     * Alerts the admin about products whose stock this order brought down to the low-stock level.
+     * Products that were already low before the order are not reported again.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void checkStock(OrderPlacedEvent event) {
+        withRetry("low stock check", event, () -> {
+            Map<Long, Integer> ordered = new HashMap<>();
+            for (OrderItem item : event.getItems()) {
+                ordered.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            List<Product> crossed = new ArrayList<>();
+            for (Product product : productRepository.findLowStock(ordered.keySet(), LOW_STOCK_THRESHOLD)) {
+                if (product.getStockQuantity() + ordered.get(product.getId()) > LOW_STOCK_THRESHOLD) {
+                    crossed.add(product);
+                }
+            }
+            if (!crossed.isEmpty()) {
+                notificationService.sendLowStockAlert(crossed);
+            }
+        });
+    }
+
+    /**
+     * Adds the order lines to the daily sales rollup, in one transaction so a retry never counts a line twice.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void updateSalesRollup(OrderPlacedEvent event) {
+        Date saleDate = ProductSalesDaily.saleDateOf(event.getOrderDate());
+        withRetry("sales rollup", event, () -> transactionTemplate.executeWithoutResult(status -> {
+            for (OrderItem item : event.getItems()) {
+                salesDailyRepository.addSale(saleDate, item.getProductId(), item.getCategory(),
+                        item.getQuantity(), item.getLineTotal());
+            }
+        }));
+    }
+
+    private void withRetry(String task, OrderPlacedEvent event, Runnable action) {
+        submit(task, event, action, 1);
+    }
+
+    private void submit(String task, OrderPlacedEvent event, Runnable action, int attempt) {
+        try {
+            executor.execute(() -> run(task, event, action, attempt));
+        } catch (TaskRejectedException e) {
+            System.err.println("ORDER ERROR: " + task + " for order " + event.getOrderId()
+                    + " dropped, the order event queue is full or shut down.");
+        }
+    }
+
+    private void run(String task, OrderPlacedEvent event, Runnable action, int attempt) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            if (attempt >= maxAttempts) {
+                System.err.println("ORDER ERROR: " + task + " for order " + event.getOrderId()
+                        + " failed after " + attempt + " attempts: " + e.getMessage());
+                return;
+            }
+            System.err.println("ORDER ERROR: " + task + " for order " + event.getOrderId()
+                    + " failed (attempt " + attempt + "), retrying: " + e.getMessage());
+            Instant due = Instant.now().plusMillis(backoffMillis << (attempt - 1));
+            try {
+                retryScheduler.schedule(() -> submit(task, event, action, attempt + 1), due);
+            } catch (TaskRejectedException rejected) {
+                System.err.println("ORDER ERROR: " + task + " for order " + event.getOrderId()
+                        + " dropped, the retry could not be scheduled.");
+            }
+        }
+    }
+}
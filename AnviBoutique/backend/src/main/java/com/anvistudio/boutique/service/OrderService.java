@@ -1,79 +1,88 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.dto.DailySalesDTO;
+import com.anvistudio.boutique.dto.SalesReportDTO;
+import com.anvistudio.boutique.event.OrderPlacedEvent;
 import com.anvistudio.boutique.model.Address;
 import com.anvistudio.boutique.model.CartItem;
 import com.anvistudio.boutique.model.Order;
+import com.anvistudio.boutique.model.OrderItem;
+import com.anvistudio.boutique.model.ProductSalesDaily;
 import com.anvistudio.boutique.model.User;
+import com.anvistudio.boutique.repository.OrderItemRepository;
 import com.anvistudio.boutique.repository.OrderRepository;
+import com.anvistudio.boutique.repository.ProductSalesDailyRepository;
+import com.anvistudio.boutique.util.Money;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
     private final OrderRepository orderRepository; // Changed from public to private
+    private final OrderItemRepository orderItemRepository;
+    private final ProductSalesDailyRepository salesDailyRepository;
+    private final StockReservationService stockReservationService;
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Standard 7-day return window in milliseconds
     private static final long RETURN_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
 
-    public OrderService(OrderRepository orderRepository, UserService userService) {
+    // Orders that count as sales, and those being or having been returned
+    private static final Set<Order.OrderStatus> SOLD_STATUSES = EnumSet.of(Order.OrderStatus.PENDING,
+            Order.OrderStatus.PROCESSING, Order.OrderStatus.SHIPPED, Order.OrderStatus.DELIVERED,
+            Order.OrderStatus.RETURN_REQUESTED);
+    private static final Set<Order.OrderStatus> RETURN_STATUSES = EnumSet.of(Order.OrderStatus.RETURN_REQUESTED,
+            Order.OrderStatus.RETURNED);
+    // Final statuses whose units are back in stock
+    private static final Set<Order.OrderStatus> RESTOCKED_STATUSES = EnumSet.of(Order.OrderStatus.CANCELLED,
+            Order.OrderStatus.RETURNED);
+
+    public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                        ProductSalesDailyRepository salesDailyRepository,
+                        StockReservationService stockReservationService, UserService userService,
+                        ApplicationEventPublisher eventPublisher) {
         this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.salesDailyRepository = salesDailyRepository;
+        this.stockReservationService = stockReservationService;
         this.userService = userService;
+        this.eventPublisher = eventPublisher;
     }
 
 
     @Transactional
-public Order fulfillOrder(User user, List<CartItem> cartItems, Address address, 
-                         String paymentMode, String stripeIntentId) {
-    
-    // 1. Calculate total
-    BigDecimal totalAmount = cartItems.stream()
-        .map(item -> BigDecimal.valueOf(item.getTotalPrice()))
-        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-    // 2. Create order items snapshot
-    String orderItemsSnapshot = cartItems.stream()
-        .map(item -> String.format("%dx %s [ID:%d] (₹%.2f)",
-                item.getQuantity(),
-                item.getProduct().getName(),
-                item.getProduct().getId(),
-                item.getTotalPrice()))
-        .collect(Collectors.joining("; "));
-
-    // 3. Create address snapshot
-    String addressSnapshot = String.format(
-        "%s, %s, %s, %s, %s - %s, Phone: %s",
-        address.getRecipientName(),
-        address.getStreetAddress(),
-        address.getLandmark() != null ? address.getLandmark() : "",
-        address.getCity(),
-        address.getState(),
-        address.getPincode(),
-        address.getPhoneNumber()
-    );
-
-    // 4. Create and save order
-    Order order = new Order();
-    order.setUser(user);
-    order.setOrderDate(new Date());
-    order.setTotalAmount(totalAmount);
-    order.setStatus(Order.OrderStatus.PROCESSING);
-    order.setShippingAddressSnapshot(addressSnapshot);
-    order.setOrderItemsSnapshot(orderItemsSnapshot);
-    
-    // 5. Store payment info (you may want to add a field to Order entity)
-    // order.setPaymentMode(paymentMode);
-    // order.setStripePaymentIntentId(stripeIntentId);
-
-    return orderRepository.save(order);
-}
+    public Order fulfillOrder(User user, List<CartItem> cartItems, Address address,
+                              String paymentMode, String stripeIntentId) {
+
+        // 1. Create address snapshot
+        String addressSnapshot = String.format(
+            "%s, %s, %s, %s, %s - %s, Phone: %s",
+            address.getRecipientName(),
+            address.getStreetAddress(),
+            address.getLandmark() != null ? address.getLandmark() : "",
+            address.getCity(),
+            address.getState(),
+            address.getPincode(),
+            address.getPhoneNumber()
+        );
+
+        // 2. Save the order and its lines
+        // (payment info: you may want to add paymentMode / stripePaymentIntentId fields to the Order entity)
+        return placeOrder(user, cartItems, addressSnapshot);
+    }
 
     /**
      * NEW: Retrieves all orders regardless of user (for Admin dashboard).
@@ -106,13 +115,49 @@ public List<Order> getOrdersByUserId(Long userId) {
 }
 
     /**
-     * NEW: Utility method to save an Order (used by AdminController for status updates).
+     * NEW: Utility method to save an Order (status changes go through updateStatus).
      */
     @Transactional
     public Order saveOrder(Order order) {
         return orderRepository.save(order);
     }
 
+    /**
+     * Moves the order to the new status (admin status updates). An order that becomes CANCELLED or RETURNED puts
+     * its units back into stock and is taken out of the daily sales rollup, in this transaction; such an order
+     * cannot be moved to another status afterwards.
+     * @throws IllegalArgumentException if there is no such order.
+     * @throws IllegalStateException if the order is cancelled or returned, or its status changed concurrently.
+     */
+    @Transactional
+    public Order updateStatus(Long orderId, Order.OrderStatus newStatus) {
+        Order order = getOrderById(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("Order not found: " + orderId));
+        Order.OrderStatus oldStatus = order.getStatus();
+        if (oldStatus == newStatus) {
+            return order;
+        }
+        if (RESTOCKED_STATUSES.contains(oldStatus)) {
+            throw new IllegalStateException("Order #" + orderId + " is " + oldStatus + " and cannot be reopened.");
+        }
+        // Conditional, so two requests cancelling the same order cannot both put its units back
+        if (orderRepository.transition(orderId, oldStatus, newStatus) == 0) {
+            throw new IllegalStateException("Order #" + orderId + " was updated meanwhile; please reload it.");
+        }
+        order.setStatus(newStatus);
+
+        if (RESTOCKED_STATUSES.contains(newStatus)) {
+            Date saleDate = ProductSalesDaily.saleDateOf(order.getOrderDate());
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (OrderItem item : order.getItems()) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+                salesDailyRepository.removeSale(saleDate, item.getProductId(), item.getQuantity(), item.getLineTotal());
+            }
+            stockReservationService.restock(quantities);
+        }
+        return order;
+    }
+
     /**
      * Handles immediate order cancellation logic (for PENDING/PROCESSING orders).
      */
@@ -125,8 +170,7 @@ public List<Order> getOrdersByUserId(Long userId) {
             throw new IllegalStateException("Order status is " + order.getStatus() + ". Cannot be cancelled.");
         }
 
-        order.setStatus(Order.OrderStatus.CANCELLED);
-        orderRepository.save(order);
+        updateStatus(orderId, Order.OrderStatus.CANCELLED);
 
         System.out.println("LOG: Order " + orderId + " cancelled. Initiating refund for amount: " + order.getTotalAmount());
         // TODO: Trigger Refund Process (Stripe API call would happen here)
@@ -174,31 +218,61 @@ public void requestReturn(Long orderId) {
 
         User user = cartItems.get(0).getUser();
 
-        BigDecimal totalAmount = cartItems.stream()
-                .map(item -> BigDecimal.valueOf(item.getTotalPrice()))
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(2, BigDecimal.ROUND_HALF_UP);
+        String shippingAddressSnapshot = "Shipping Address: Pending Address Selection - Mock Data for Demo";
 
-        // Format: <QTY>x <NAME> [ID:<ID>] (₹<PRICE>); ...
-        String orderItemsSnapshot = cartItems.stream()
-                .map(item -> String.format("%dx %s [ID:%d] (₹%.2f)",
-                        item.getQuantity(),
-                        item.getProduct().getName(),
-                        item.getProduct().getId(),
-                        item.getTotalPrice()))
-                .collect(Collectors.joining("; "));
+        return placeOrder(user, cartItems, shippingAddressSnapshot);
+    }
 
-        String shippingAddressSnapshot = "Shipping Address: Pending Address Selection - Mock Data for Demo";
+    /**
+     * Saves a PROCESSING order for the cart lines, then its OrderItems (product details and prices as sold now)
+     * in one batch, in the caller's transaction. The lines are not added to the returned order's items;
+     * read the order again to get them.
+     * Publishes {@link OrderPlacedEvent}; its listeners run once the order has committed.
+     */
+    private Order placeOrder(User user, List<CartItem> cartItems, String shippingAddressSnapshot) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setOrderDate(new Date());
+        order.setTotalAmount(Money.toRupees(CartService.getTotalPaise(cartItems)));
+        order.setStatus(Order.OrderStatus.PROCESSING);
+        order.setShippingAddressSnapshot(shippingAddressSnapshot);
+        Order savedOrder = orderRepository.save(order);
+
+        List<OrderItem> items = new ArrayList<>(cartItems.size());
+        for (CartItem cartItem : cartItems) {
+            OrderItem item = OrderItem.of(cartItem);
+            item.setOrder(savedOrder);
+            items.add(item);
+        }
+        orderItemRepository.insertAll(savedOrder.getId(), items);
 
-        Order newOrder = new Order();
-        newOrder.setUser(user);
-        newOrder.setOrderDate(new Date());
-        newOrder.setTotalAmount(totalAmount);
-        newOrder.setStatus(Order.OrderStatus.PROCESSING);
-        newOrder.setShippingAddressSnapshot(shippingAddressSnapshot);
-        newOrder.setOrderItemsSnapshot(orderItemsSnapshot);
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(), user.getId(), user.getUsername(),
+                savedOrder.getOrderDate(), savedOrder.getTotalAmount(), items));
+        return savedOrder;
+    }
 
-        return orderRepository.save(newOrder);
+    /**
+     * Sales report for the orders placed in the last {@code days} days: the {@code limit} best and most returned
+     * products and the revenue of every category. Each list is one aggregate query over order_items.
+     */
+    @Transactional(readOnly = true)
+    public SalesReportDTO getSalesReport(int days, int limit) {
+        Date from = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+        PageRequest top = PageRequest.of(0, limit);
+        return new SalesReportDTO(from,
+                orderItemRepository.sumByProduct(SOLD_STATUSES, from, top),
+                orderItemRepository.sumByProduct(RETURN_STATUSES, from, top),
+                orderItemRepository.sumByCategory(SOLD_STATUSES, from));
+    }
+
+    /**
+     * Units and revenue per day for the last {@code days} days, from the daily sales rollup
+     * (net of cancelled and returned orders, like the sales report).
+     */
+    @Transactional(readOnly = true)
+    public List<DailySalesDTO> getDailySales(int days) {
+        Date from = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+        return salesDailyRepository.sumByDay(from);
     }
 
     public void populateDummyOrders(User user) {
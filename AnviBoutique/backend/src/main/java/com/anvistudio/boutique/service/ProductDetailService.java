@@ -0,0 +1,97 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductDetailDTO;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.ReviewDTO;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.model.RatingStats;
+import com.anvistudio.boutique.repository.ProductRepository;
+import com.anvistudio.boutique.repository.ReviewRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Assembles the product page in one call: the product, its rating summary, the first page of
+ * approved reviews and the related cards (from the in-memory index).
+ *
+ * A cache miss costs a fixed two queries: the product with its stored rating summary (average and review
+ * count) and the review page. Results are cached under the product's ETag from {@link CatalogVersionService},
+ * which changes whenever the product, its reviews or its related products change, so a cached entry is
+ * never stale.
+ */
+@Service
+public class ProductDetailService {
+
+    // Reviews shown with the product; the rest are paged separately
+    private static final int FIRST_REVIEW_PAGE_SIZE = 10;
+
+    // Most recently viewed products kept assembled
+    private static final int MAX_CACHED_PRODUCTS = 500;
+
+    private final ProductRepository productRepository;
+    private final ReviewRepository reviewRepository;
+    private final ProductService productService;
+
+    // productId -> detail assembled for a given version; access-ordered for LRU eviction
+    private final Map<Long, CachedDetail> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedDetail> eldest) {
+            return size() > MAX_CACHED_PRODUCTS;
+        }
+    };
+
+    public ProductDetailService(ProductRepository productRepository, ReviewRepository reviewRepository,
+                                ProductService productService) {
+        this.productRepository = productRepository;
+        this.reviewRepository = reviewRepository;
+        this.productService = productService;
+    }
+
+    /**
+     * The product page for the given version (see {@link CatalogVersionService#productETag(Long)}).
+     * The version must be taken before calling, so the data is never older than the version it is cached under.
+     */
+    @Transactional(readOnly = true)
+    public Optional<ProductDetailDTO> getProductDetail(Long productId, String version) {
+        synchronized (cache) {
+            CachedDetail cached = cache.get(productId);
+            if (cached != null && cached.version.equals(version)) {
+                return Optional.of(cached.detail);
+            }
+        }
+
+        Optional<Product> productOptional = productRepository.findById(productId);
+        if (productOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        Product product = productOptional.get();
+
+        RatingStats rating = product.getRatingStats();
+        ProductPageDTO<ReviewDTO> reviews = reviewRepository.findApprovedPage(productId, rating.getRatingCount(),
+                null, FIRST_REVIEW_PAGE_SIZE, null);
+        List<ProductCardDTO> related = productService.getRelatedProducts(product.getCategory(), productId);
+
+        ProductDetailDTO detail = new ProductDetailDTO(product, rating.getAverageRating().doubleValue(), rating.getRatingCount(),
+                reviews.getContent(), reviews.getNextCursor(), related);
+        synchronized (cache) {
+            cache.put(productId, new CachedDetail(version, detail));
+        }
+        return Optional.of(detail);
+    }
+
+    private static final class CachedDetail {
+        final String version;
+        final ProductDetailDTO detail;
+
+        CachedDetail(String version, ProductDetailDTO detail) {
+            this.version = version;
+            this.detail = detail;
+        }
+    }
+}
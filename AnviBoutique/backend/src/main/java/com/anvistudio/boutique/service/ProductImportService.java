@@ -0,0 +1,446 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.ProductImportResultDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk product import for onboarding a season's catalog in one request.
+ *
+ * The upload is read record by record (CSV with a header row, or one JSON object per line), so memory does not
+ * grow with the file. SKUs are checked against an in-memory set of the existing SKUs and those already seen in
+ * the file; rows are then written with JDBC batch INSERTs (new SKUs) and UPDATEs (existing SKUs) instead of one
+ * findById + save per product. The in-memory indexes are refreshed once, and subscribers get a single sale
+ * announcement for all products that went on sale.
+ *
+ * The stock in the file is the stock that can still be sold, like in the product form. For an existing SKU the
+ * difference to the stock read when the import started is applied as a delta, so units that checkouts reserve
+ * while the import runs are not overwritten; an unchanged stock leaves the column as it is.
+ *
+ * Only the fields present in a record are written to an existing SKU (the UPDATE keeps a column whose parameter
+ * is NULL), so a file with just sku,name,category,price changes prices without touching stock, descriptions or
+ * visibility. Defaults for omitted fields apply to new SKUs only.
+ */
+@Service
+public class ProductImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final String INSERT_SQL = "INSERT INTO products (name, description, price, discount_percent, sale_price, "
+            + "category, image_url, product_color, stock_quantity, sku, size_options, size_guide_url, estimated_delivery, "
+            + "delivery_and_return_policy, additional_information, product_tags, is_available, date_created) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int INSERT_SKU_PARAM = 9;
+
+    private static final String UPDATE_SQL = "UPDATE products SET name = ?, description = COALESCE(?, description), "
+            + "price = ?, discount_percent = ?, sale_price = ?, category = ?, image_url = COALESCE(?, image_url), "
+            + "product_color = COALESCE(?, product_color), stock_quantity = GREATEST(stock_quantity + ?, 0), "
+            + "size_options = COALESCE(?, size_options), size_guide_url = COALESCE(?, size_guide_url), "
+            + "estimated_delivery = COALESCE(?, estimated_delivery), "
+            + "delivery_and_return_policy = COALESCE(?, delivery_and_return_policy), "
+            + "additional_information = COALESCE(?, additional_information), product_tags = COALESCE(?, product_tags), "
+            + "is_available = COALESCE(?, is_available) WHERE sku = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate lookupTemplate;
+    private final ObjectMapper objectMapper;
+    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper, NotificationService notificationService,
+                                ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lookupTemplate = new TransactionTemplate(transactionManager);
+        this.lookupTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Imports products from the stream, creating new SKUs and updating existing ones.
+     * Invalid rows are skipped and reported; all valid rows are written in one transaction.
+     * @throws IllegalArgumentException if the file itself is unreadable (e.g. CSV without a header row).
+     * @throws IllegalStateException if a new SKU was created concurrently; nothing is imported then.
+     */
+    public ProductImportResultDTO importProducts(InputStream input, Format format) {
+        ImportRun run = transactionTemplate.execute(status -> {
+            ImportRun importRun = new ImportRun(loadExistingProducts());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                if (format == Format.CSV) {
+                    readCsv(reader, importRun);
+                } else {
+                    readNdjson(reader, importRun);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not read the import file: " + e.getMessage(), e);
+            }
+            importRun.flush();
+            if (importRun.result.getCreated() + importRun.result.getUpdated() > 0) {
+                eventPublisher.publishEvent(CatalogChangedEvent.bulkUpdated());
+            }
+            return importRun;
+        });
+
+        // One consolidated announcement, outside the import transaction
+        if (!run.newlyOnSale.isEmpty()) {
+            notificationService.sendBulkSaleNotification(run.newlyOnSale);
+        }
+        System.out.println("CATALOG INFO: Product import finished: " + run.result.getCreated() + " created, "
+                + run.result.getUpdated() + " updated, " + run.result.getSkipped() + " skipped.");
+        return run.result;
+    }
+
+    /**
+     * SKU -> current discount and stock of every product that has a SKU (used for upsert routing, sale
+     * detection and the stock delta).
+     */
+    private Map<String, ExistingProduct> loadExistingProducts() {
+        Map<String, ExistingProduct> existing = new HashMap<>();
+        jdbcTemplate.query("SELECT sku, discount_percent, stock_quantity FROM products WHERE sku IS NOT NULL",
+                rs -> {
+                    existing.put(rs.getString(1), new ExistingProduct(rs.getInt(2), rs.getInt(3)));
+                });
+        return existing;
+    }
+
+    private static final class ExistingProduct {
+        final int discountPercent;
+        final int stockQuantity;
+
+        ExistingProduct(int discountPercent, int stockQuantity) {
+            this.discountPercent = discountPercent;
+            this.stockQuantity = stockQuantity;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Parsing
+    // ---------------------------------------------------------------------
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            run.countRecord();
+            Product product;
+            Set<String> fields;
+            try {
+                JsonNode record = objectMapper.readTree(line);
+                product = objectMapper.treeToValue(record, Product.class);
+                fields = new HashSet<>(record.propertyNames());
+            } catch (Exception e) {
+                run.reject(lineNumber, "Invalid JSON: " + firstLine(e.getMessage()));
+                continue;
+            }
+            run.accept(lineNumber, product, fields);
+        }
+    }
+
+    private void readCsv(BufferedReader reader, ImportRun run) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null || header.isEmpty()) {
+            throw new IllegalArgumentException("The CSV file must start with a header row (name,price,category,sku,...).");
+        }
+
+        List<String> record;
+        int recordNumber = 1;
+        while ((record = csv.next()) != null) {
+            recordNumber++;
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            run.countRecord();
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < header.size() && i < record.size(); i++) {
+                String value = record.get(i).trim();
+                if (!value.isEmpty()) {
+                    values.put(header.get(i).trim(), value);
+                }
+            }
+            Product product;
+            try {
+                product = objectMapper.convertValue(values, Product.class);
+            } catch (Exception e) {
+                run.reject(recordNumber, "Invalid value: " + firstLine(e.getMessage()));
+                continue;
+            }
+            run.accept(recordNumber, product, values.keySet());
+        }
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, double-quoted fields may contain commas, quotes ("") and line breaks.
+     */
+    private static final class CsvReader {
+        private final Reader reader;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        List<String> next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (following != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Validation and batching
+    // ---------------------------------------------------------------------
+
+    /**
+     * State of one import: SKU sets, pending batches and the result counters.
+     */
+    private final class ImportRun {
+        final Map<String, ExistingProduct> existingProducts;
+        final Set<String> seenSkus = new HashSet<>();
+        final List<Object[]> inserts = new ArrayList<>(BATCH_SIZE);
+        final List<Object[]> updates = new ArrayList<>(BATCH_SIZE);
+        final List<Product> newlyOnSale = new ArrayList<>();
+        final ProductImportResultDTO result = new ProductImportResultDTO();
+        final Timestamp importTime = new Timestamp(System.currentTimeMillis());
+
+        ImportRun(Map<String, ExistingProduct> existingProducts) {
+            this.existingProducts = existingProducts;
+        }
+
+        void countRecord() {
+            result.setProcessed(result.getProcessed() + 1);
+        }
+
+        /**
+         * @param fields the properties present in the record; the others are left unchanged on an existing SKU.
+         */
+        void accept(int recordNumber, Product product, Set<String> fields) {
+            String error = validate(product);
+            if (error != null) {
+                reject(recordNumber, error);
+                return;
+            }
+
+            String sku = product.getSku().trim();
+            if (!seenSkus.add(sku)) {
+                reject(recordNumber, "Duplicate SKU in file: " + sku);
+                return;
+            }
+            product.setSku(sku);
+            ExistingProduct existing = existingProducts.get(sku);
+            if (existing == null) {
+                applyDefaults(product);
+            } else if (!fields.contains("discountPercent")) {
+                // The sale price is recomputed from the new price and the discount the product already has
+                product.setDiscountPercent(existing.discountPercent);
+            }
+            product.refreshSalePrice();
+
+            if (product.getDiscountPercent() > 0 && (existing == null || existing.discountPercent == 0)) {
+                newlyOnSale.add(product);
+            }
+
+            if (existing == null) {
+                inserts.add(insertParams(product));
+                result.setCreated(result.getCreated() + 1);
+                if (inserts.size() == BATCH_SIZE) {
+                    flushInserts();
+                }
+            } else {
+                updates.add(updateParams(product, fields, existing));
+                result.setUpdated(result.getUpdated() + 1);
+                if (updates.size() == BATCH_SIZE) {
+                    flushUpdates();
+                }
+            }
+        }
+
+        void reject(int recordNumber, String message) {
+            result.setSkipped(result.getSkipped() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add("Record " + recordNumber + ": " + message);
+            }
+        }
+
+        void flush() {
+            flushInserts();
+            flushUpdates();
+        }
+
+        private void flushInserts() {
+            if (!inserts.isEmpty()) {
+                try {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+                } catch (DataIntegrityViolationException e) {
+                    throw duplicateSku(e);
+                }
+                inserts.clear();
+            }
+        }
+
+        /**
+         * A SKU that did not exist when the import started was created meanwhile (e.g. by a concurrent import).
+         */
+        private IllegalStateException duplicateSku(DataIntegrityViolationException e) {
+            List<String> skus = new ArrayList<>(inserts.size());
+            for (Object[] params : inserts) {
+                skus.add((String) params[INSERT_SKU_PARAM]);
+            }
+            String placeholders = String.join(", ", Collections.nCopies(skus.size(), "?"));
+            // In a transaction of its own, so the rows this batch did insert are not reported
+            List<String> taken = lookupTemplate.execute(status -> jdbcTemplate.queryForList(
+                    "SELECT sku FROM products WHERE sku IN (" + placeholders + ")", String.class, skus.toArray()));
+            System.err.println("CATALOG ERROR: Product import hit existing SKUs " + taken + ": " + e.getMessage());
+            return new IllegalStateException((taken.isEmpty() ? "A SKU in the file" : "SKU " + String.join(", ", taken))
+                    + " was created by another request during the import. Nothing was imported; please run the import again.");
+        }
+
+        private void flushUpdates() {
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                updates.clear();
+            }
+        }
+
+        private Object[] insertParams(Product p) {
+            return new Object[]{p.getName(), p.getDescription(), p.getPrice(), p.getDiscountPercent(), p.getSalePrice(),
+                    p.getCategory(), p.getImageUrl(), p.getProductColor(), p.getStockQuantity(), p.getSku(),
+                    p.getSizeOptions(), p.getSizeGuideUrl(), p.getEstimatedDelivery(), p.getDeliveryAndReturnPolicy(),
+                    p.getAdditionalInformation(), p.getProductTags(), p.getIsAvailable(), importTime};
+        }
+
+        /**
+         * Omitted optional fields are passed as NULL, which UPDATE_SQL keeps; omitted stock is no change.
+         */
+        private Object[] updateParams(Product p, Set<String> fields, ExistingProduct existing) {
+            int stockChange = p.getStockQuantity() != null ? p.getStockQuantity() - existing.stockQuantity : 0;
+            return new Object[]{p.getName(), p.getDescription(), p.getPrice(), p.getDiscountPercent(), p.getSalePrice(),
+                    p.getCategory(), p.getImageUrl(), p.getProductColor(), stockChange,
+                    p.getSizeOptions(), p.getSizeGuideUrl(), p.getEstimatedDelivery(), p.getDeliveryAndReturnPolicy(),
+                    p.getAdditionalInformation(), p.getProductTags(),
+                    fields.contains("isAvailable") ? p.getIsAvailable() : null, p.getSku()};
+        }
+    }
+
+    private static String validate(Product product) {
+        if (isBlank(product.getSku())) {
+            return "SKU is required.";
+        }
+        if (isBlank(product.getName())) {
+            return "Name is required.";
+        }
+        if (isBlank(product.getCategory())) {
+            return "Category is required.";
+        }
+        if (product.getPrice() == null || product.getPrice().compareTo(BigDecimal.ZERO) < 0) {
+            return "Price is required and must not be negative.";
+        }
+        if (product.getDiscountPercent() != null && (product.getDiscountPercent() < 0 || product.getDiscountPercent() > 100)) {
+            return "Discount must be between 0 and 100.";
+        }
+        if (product.getStockQuantity() != null && product.getStockQuantity() < 0) {
+            return "Stock quantity must not be negative.";
+        }
+        return null;
+    }
+
+    private static void applyDefaults(Product product) {
+        if (product.getDescription() == null) {
+            product.setDescription("");
+        }
+        if (product.getDiscountPercent() == null) {
+            product.setDiscountPercent(0);
+        }
+        if (product.getStockQuantity() == null) {
+            product.setStockQuantity(0);
+        }
+        if (product.getIsAvailable() == null) {
+            product.setIsAvailable(true);
+        }
+    }
+
+    /**
+     * Jackson messages carry a multi-line source location; the first line is enough for the report.
+     */
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "unreadable record";
+        }
+        int end = message.indexOf('\n');
+        return end < 0 ? message : message.substring(0, end);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
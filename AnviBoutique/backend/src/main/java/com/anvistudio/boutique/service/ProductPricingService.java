@@ -0,0 +1,141 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.dto.BulkPricingRequestDTO;
+import com.anvistudio.boutique.dto.BulkPricingResultDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bulk discount changes for sale events ("20% off Lehengas", or a list of product id -> discount pairs).
+ *
+ * Instead of one saveProduct call per product, each distinct discount is applied with a single set-based
+ * UPDATE that also recomputes sale_price. The in-memory indexes are refreshed once through a BULK_UPDATED
+ * event, and subscribers get one announcement listing every product that newly went on sale.
+ */
+@Service
+public class ProductPricingService {
+
+    // Keeps IN (...) lists of a single UPDATE at a size every database accepts
+    private static final int MAX_IDS_PER_UPDATE = 1000;
+
+    private final ProductRepository productRepository;
+    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductPricingService(ProductRepository productRepository, NotificationService notificationService,
+                                 ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Applies the pricing change in one transaction, then sends the sale announcement.
+     * @throws IllegalArgumentException if the request is empty, mixes both forms or has a discount outside 0-100.
+     */
+    public BulkPricingResultDTO applyDiscounts(BulkPricingRequestDTO request) {
+        Map<Integer, List<Long>> idsByDiscount = validate(request);
+
+        List<Product> newlyOnSale = new ArrayList<>();
+        int updated = transactionTemplate.execute(status -> {
+            int rows;
+            if (idsByDiscount == null) {
+                rows = applyToCategory(request.getCategory().trim(), request.getDiscountPercent(), newlyOnSale);
+            } else {
+                rows = 0;
+                for (Map.Entry<Integer, List<Long>> group : idsByDiscount.entrySet()) {
+                    rows += applyToIds(group.getValue(), group.getKey(), newlyOnSale);
+                }
+            }
+            if (rows > 0) {
+                eventPublisher.publishEvent(CatalogChangedEvent.bulkUpdated());
+            }
+            return rows;
+        });
+
+        // One consolidated announcement, outside the update transaction
+        if (!newlyOnSale.isEmpty()) {
+            notificationService.sendBulkSaleNotification(newlyOnSale);
+        }
+        System.out.println("CATALOG INFO: Bulk pricing updated " + updated + " products, "
+                + newlyOnSale.size() + " newly on sale.");
+        return new BulkPricingResultDTO(updated, newlyOnSale.size());
+    }
+
+    private int applyToCategory(String category, int discount, List<Product> newlyOnSale) {
+        List<Product> undiscounted = discount > 0
+                ? productRepository.findByCategoryAndDiscountPercentAndIsAvailableTrue(category, 0)
+                : List.of();
+        int rows = productRepository.applyDiscountToCategory(category, discount);
+        collectNewlyOnSale(undiscounted, discount, newlyOnSale);
+        return rows;
+    }
+
+    private int applyToIds(List<Long> ids, int discount, List<Product> newlyOnSale) {
+        int rows = 0;
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_UPDATE));
+            List<Product> undiscounted = discount > 0
+                    ? productRepository.findByIdInAndDiscountPercentAndIsAvailableTrue(chunk, 0)
+                    : List.of();
+            rows += productRepository.applyDiscountToIds(chunk, discount);
+            collectNewlyOnSale(undiscounted, discount, newlyOnSale);
+        }
+        return rows;
+    }
+
+    /**
+     * The loaded products are detached by the UPDATE; bring them to the new price for the announcement.
+     */
+    private static void collectNewlyOnSale(List<Product> undiscounted, int discount, List<Product> newlyOnSale) {
+        for (Product product : undiscounted) {
+            product.setDiscountPercent(discount);
+            product.refreshSalePrice();
+            newlyOnSale.add(product);
+        }
+    }
+
+    /**
+     * @return null for a category request, otherwise the product ids grouped by their new discount.
+     */
+    private static Map<Integer, List<Long>> validate(BulkPricingRequestDTO request) {
+        boolean hasCategory = request != null && request.getCategory() != null && !request.getCategory().isBlank();
+        boolean hasPairs = request != null && request.getDiscounts() != null && !request.getDiscounts().isEmpty();
+        if (hasCategory == hasPairs) {
+            throw new IllegalArgumentException("Provide either a category with a discountPercent, or a map of product id to discount.");
+        }
+
+        if (hasCategory) {
+            checkDiscount(request.getDiscountPercent());
+            return null;
+        }
+
+        Map<Integer, List<Long>> idsByDiscount = new TreeMap<>();
+        for (Map.Entry<Long, Integer> pair : request.getDiscounts().entrySet()) {
+            if (pair.getKey() == null) {
+                throw new IllegalArgumentException("Product ids must not be empty.");
+            }
+            checkDiscount(pair.getValue());
+            idsByDiscount.computeIfAbsent(pair.getValue(), d -> new ArrayList<>()).add(pair.getKey());
+        }
+        return idsByDiscount;
+    }
+
+    private static void checkDiscount(Integer discount) {
+        if (discount == null || discount < 0 || discount > 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 100.");
+        }
+    }
+}
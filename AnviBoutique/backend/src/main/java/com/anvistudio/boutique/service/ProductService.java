@@ -1,30 +1,96 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.dto.FacetCountsDTO;
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductCardDTO;
+import com.anvistudio.boutique.dto.ProductFilterDTO;
+import com.anvistudio.boutique.dto.ProductInventoryDTO;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.SuggestionDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
 import com.anvistudio.boutique.model.Product;
 import com.anvistudio.boutique.repository.ProductRepository;
+import com.anvistudio.boutique.repository.ProductRepositoryCustom;
 import com.anvistudio.boutique.repository.CartItemRepository;
+import com.anvistudio.boutique.repository.GuestCartItemRepository;
 import com.anvistudio.boutique.repository.WishlistRepository;
+import com.anvistudio.boutique.search.ProductFacetIndex;
+import com.anvistudio.boutique.search.ProductSearchIndex;
+import com.anvistudio.boutique.search.ProductSuggestIndex;
+import com.anvistudio.boutique.search.RelatedProductsIndex;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.Comparator;
 
 @Service
 public class ProductService {
 
+    // Upper bound for a single page of the shop listing
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Upper bound for the ranked results of the search box
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
+    // Upper bound for autocomplete completions per request
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private static final int RELATED_PRODUCTS_LIMIT = 4;
+
     private final ProductRepository productRepository;
     private final CartItemRepository cartItemRepository;
+    private final GuestCartItemRepository guestCartItemRepository;
     private final WishlistRepository wishlistRepository;
     private final NotificationService notificationService; // NEW INJECTION
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final RelatedProductsIndex relatedProductsIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ProductService(ProductRepository productRepository, CartItemRepository cartItemRepository,
-                          WishlistRepository wishlistRepository, NotificationService notificationService) { // NEW CONSTRUCTOR PARAMETER
+                          GuestCartItemRepository guestCartItemRepository,
+                          WishlistRepository wishlistRepository, NotificationService notificationService, // NEW CONSTRUCTOR PARAMETER
+                          ProductSearchIndex productSearchIndex, ProductSuggestIndex productSuggestIndex,
+                          ProductFacetIndex productFacetIndex, RelatedProductsIndex relatedProductsIndex,
+                          ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
         this.cartItemRepository = cartItemRepository;
+        this.guestCartItemRepository = guestCartItemRepository;
         this.wishlistRepository = wishlistRepository;
         this.notificationService = notificationService; // <--- CRITICAL: Initialization was missing or incorrect previously
+        this.productSearchIndex = productSearchIndex;
+        this.productSuggestIndex = productSuggestIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.relatedProductsIndex = relatedProductsIndex;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Backfills the persisted sale price for products saved before the column existed.
+     * Runs at startup through the proxy (so the transaction applies), before the search indexes load the catalog.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfillSalePrices() {
+        List<Product> missing = productRepository.findBySalePriceIsNull();
+        if (missing.isEmpty()) {
+            return;
+        }
+        missing.forEach(Product::refreshSalePrice);
+        productRepository.saveAll(missing);
+        System.out.println("CATALOG INFO: Backfilled sale price for " + missing.size() + " products.");
     }
 
     /**
@@ -45,12 +111,17 @@ public class ProductService {
     }
 
 
-    public List<Product> getRelatedProducts(String category, Long excludeProductId) {
-    List<Product> products = productRepository.findByCategory(category);
-    products.removeIf(p -> p.getId().equals(excludeProductId));
-    products.removeIf(p -> !p.getIsAvailable());
-    return products.stream().limit(4).collect(Collectors.toList());
-}
+    /**
+     * Up to 4 other available products of the same category, most similar first, as cards.
+     * Served from the precomputed related-products index. The category is only queried until the index is built,
+     * or for a product the index does not hold (unavailable products are not indexed).
+     */
+    public List<ProductCardDTO> getRelatedProducts(String category, Long excludeProductId) {
+        if (relatedProductsIndex.isReady() && relatedProductsIndex.contains(excludeProductId)) {
+            return relatedProductsIndex.related(excludeProductId);
+        }
+        return productRepository.findRelatedCards(category, excludeProductId, PageRequest.of(0, RELATED_PRODUCTS_LIMIT));
+    }
 
     /**
      * Retrieves all products (used for admin view).
@@ -66,21 +137,42 @@ public class ProductService {
     /**
      * Admin function: Saves a new product or updates an existing one.
      * MODIFIED: Added logic to check for sale/clearance status and trigger notification.
+     *
+     * The stock is the stock that can still be sold (units held by open checkouts are already taken out of it).
+     * For an existing product the difference between the entered stock and the stock the form was loaded with
+     * ({@code previousStockQuantity}, or the stored stock if the form did not send it) is applied as a delta,
+     * so checkouts that reserved units while the form was open are not overwritten.
      */
     @Transactional
     public Product saveProduct(Product product) {
         // 1. Check the previous state of the discount if updating an existing product
         boolean wasPreviouslyDiscounted = false;
+        Integer stockChange = null;
         if (product.getId() != null) {
             Optional<Product> oldProductOptional = productRepository.findById(product.getId());
             if (oldProductOptional.isPresent()) {
                 // If old discount was > 0, set flag to true
                 wasPreviouslyDiscounted = oldProductOptional.get().getDiscountPercent() > 0;
+                // The rating summary is maintained by ReviewService; keep it instead of what the form sent
+                product.setRatingStats(oldProductOptional.get().getRatingStats());
+                // Flash-sale mode is switched with setFlashSale, not through the product form
+                product.setFlashSale(oldProductOptional.get().getFlashSale());
+                int previousStock = product.getPreviousStockQuantity() != null
+                        ? product.getPreviousStockQuantity() : oldProductOptional.get().getStockQuantity();
+                stockChange = product.getStockQuantity() != null ? product.getStockQuantity() - previousStock : 0;
             }
         }
 
-        // 2. Save the product first to commit the new discount/clearance status
+        // 2. Keep the persisted sale price in sync, then save to commit the new discount/clearance status
+        product.refreshSalePrice();
         Product savedProduct = productRepository.save(product);
+        if (stockChange != null) {
+            // The entity save does not write the stock; apply the change and return what is stored now
+            if (stockChange != 0) {
+                productRepository.adjustStock(savedProduct.getId(), stockChange);
+            }
+            savedProduct.setStockQuantity(productRepository.findStock(savedProduct.getId()).orElse(0));
+        }
 
         // 3. Notification Logic:
         // Trigger notification ONLY if the product is currently discounted (> 0%)
@@ -92,87 +184,93 @@ public class ProductService {
             notificationService.sendSaleNotification(savedProduct);
         }
 
+        // 4. Let the in-memory indexes pick up the change once the transaction commits
+        eventPublisher.publishEvent(CatalogChangedEvent.saved(savedProduct));
+
+        return savedProduct;
+    }
+
+    /**
+     * Admin function: Puts a product into flash-sale mode (checkouts go through the waiting room) or takes it out.
+     */
+    @Transactional
+    public Product setFlashSale(Long productId, boolean enabled) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found."));
+        product.setFlashSale(enabled);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(CatalogChangedEvent.saved(savedProduct));
         return savedProduct;
     }
 
 
     /**
      * Retrieves products based on multiple filter and sort criteria.
+     * Filtering and sorting are translated to SQL by ProductRepositoryCustomImpl; nothing is done in memory.
      */
-    public List<Product> getFilteredProducts(String category, String sortBy, Double minPrice, Double maxPrice, String status, String color, String keyword) {
-        List<Product> products;
-
-        // 1. Base Retrieval (Filter by Keyword first for broad search, or Category)
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            products = productRepository.searchByKeyword(keyword.trim());
-            category = null;
-        } else if (category != null && !category.trim().isEmpty()) {
-            products = productRepository.findByCategory(category.trim());
-        } else {
-            products = productRepository.findAll();
-        }
+    public List<ProductCardDTO> getFilteredProducts(String category, String sortBy, Double minPrice, Double maxPrice, String status, String color, String keyword) {
+        ProductFilterDTO filter = new ProductFilterDTO(category, sortBy, minPrice, maxPrice, status, color, keyword);
+        return productRepository.findFiltered(resolveKeyword(filter));
+    }
 
-        // 2. Filter by Price (In-memory filtering - FIX APPLIED HERE)
-        if (minPrice != null || maxPrice != null) {
-            products.removeIf(p -> {
-                // *** FIX: Use discounted price for comparison in price range filtering ***
-                double price = p.getDiscountedPrice().doubleValue();
-                if (minPrice != null && price < minPrice) return true;
-                if (maxPrice != null && price > maxPrice) return true;
-                return false;
-            });
-        }
+    /**
+     * Retrieves one page of the filtered product listing plus total counts.
+     * @param cursor Optional keyset cursor from a previous page's nextCursor; when present, page is ignored.
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order.
+     */
+    public ProductPageDTO<ProductCardDTO> getFilteredProductPage(ProductFilterDTO filter, int page, int size, String cursor) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        PageCursor after = (cursor != null && !cursor.isBlank()) ? PageCursor.decode(cursor, ProductRepositoryCustom.sortOrder(filter.getSortBy())) : null;
+        return productRepository.findFilteredPage(resolveKeyword(filter), Math.max(page, 0), pageSize, after);
+    }
 
-        // 3. Filter by Color (In-memory filtering)
-        if (color != null && !color.trim().isEmpty()) {
-            final String normalizedColor = color.trim().toLowerCase();
-            products.removeIf(p -> p.getProductColor() == null || !p.getProductColor().toLowerCase().contains(normalizedColor));
+    /**
+     * Full-text product search served from the in-memory index, best match first.
+     */
+    public List<ProductCardDTO> searchProducts(String keyword) {
+        if (!productSearchIndex.isReady()) {
+            return getFilteredProducts(null, null, null, null, null, null, keyword);
         }
 
-
-        // 4. Filter by Status (In-memory filtering)
-        if (status != null && !status.isEmpty()) {
-            switch (status) {
-                case "inStock":
-                    products.removeIf(p -> p.getStockQuantity() <= 0 || !p.getIsAvailable());
-                    break;
-                case "lowStock":
-                    products.removeIf(p -> p.getStockQuantity() <= 0 || p.getStockQuantity() > 5 || !p.getIsAvailable());
-                    break;
-                case "onSale":
-                    products.removeIf(p -> p.getDiscountPercent() <= 0);
-                    break;
-                case "clearance":
-                    products.removeIf(p -> !p.isClearance());
-                    break;
-            }
+        List<Long> rankedIds = productSearchIndex.search(keyword, MAX_SEARCH_RESULTS);
+        if (rankedIds.isEmpty()) {
+            return List.of();
         }
+        Map<Long, ProductCardDTO> cardsById = productRepository.findCardsByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(ProductCardDTO::getId, Function.identity()));
 
-        // 5. Sort (In-memory sorting already uses discounted price correctly)
-        if (sortBy != null && !sortBy.isEmpty()) {
-            Comparator<Product> comparator;
-            switch (sortBy) {
-                case "priceAsc":
-                    comparator = Comparator.comparing(Product::getDiscountedPrice);
-                    break;
-                case "priceDesc":
-                    comparator = Comparator.comparing(Product::getDiscountedPrice).reversed();
-                    break;
-                case "oldest":
-                    comparator = Comparator.comparing(Product::getDateCreated);
-                    break;
-                case "latest":
-                default:
-                    comparator = Comparator.comparing(Product::getDateCreated).reversed();
-                    break;
-            }
-            products.sort(comparator);
-        }
+        return rankedIds.stream()
+                .map(cardsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        // Final filter: Only show products marked as 'isAvailable' to customers
-        products.removeIf(p -> !p.getIsAvailable());
+    /**
+     * Sidebar counts per category, color, price range and status for the given filter, from the in-memory facet index.
+     * Returns null while the indexes are still being built.
+     */
+    public FacetCountsDTO getFacetCounts(ProductFilterDTO filter) {
+        return productFacetIndex.count(resolveKeyword(filter));
+    }
+
+    /**
+     * Typo-tolerant autocomplete for the search box, served from the in-memory trigram index.
+     */
+    public List<SuggestionDTO> suggest(String query, int limit) {
+        return productSuggestIndex.suggest(query, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
 
-        return products;
+    /**
+     * Resolves a keyword to the ids of the products matching all its terms via the search index, so the SQL query
+     * does not need LIKE scans. All matches are passed on (not just the best ones), so totals and facet counts
+     * cover every match; the repository falls back to LIKE when there are too many ids for an IN list.
+     */
+    private ProductFilterDTO resolveKeyword(ProductFilterDTO filter) {
+        if (filter.getProductIds() == null && filter.getKeyword() != null && !filter.getKeyword().trim().isEmpty()
+                && productSearchIndex.isReady()) {
+            filter.setProductIds(productSearchIndex.matchingIds(filter.getKeyword()));
+        }
+        return filter;
     }
 
 
@@ -189,11 +287,11 @@ public class ProductService {
     /**
      * Retrieves products based on category, or all products if category is null/empty.
      */
-    public List<Product> getProductsByCategoryOrAll(String category) {
+    public List<ProductInventoryDTO> getProductsByCategoryOrAll(String category) {
         if (category != null && !category.trim().isEmpty()) {
-            return productRepository.findByCategory(category.trim());
+            return productRepository.findInventoryByCategory(category.trim());
         }
-        return productRepository.findAll();
+        return productRepository.findInventory();
     }
 
     /**
@@ -202,13 +300,16 @@ public class ProductService {
     @Transactional // Ensure all steps (cleanup and delete) succeed or fail together
     public void deleteProduct(Long id) {
 
-        // 1. Cleanup: Remove product from all customer carts
+        // 1. Cleanup: Remove product from all customer and guest carts
         cartItemRepository.deleteByProductId(id);
+        guestCartItemRepository.deleteByProductId(id);
 
         // 2. Cleanup: Remove product from all customer wishlists
         wishlistRepository.deleteByProductId(id);
 
         // 3. Delete the product itself
         productRepository.deleteById(id);
+
+        eventPublisher.publishEvent(CatalogChangedEvent.deleted(id));
     }
 }
\ No newline at end of file
@@ -1,15 +1,30 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.dto.PageCursor;
+import com.anvistudio.boutique.dto.ProductPageDTO;
+import com.anvistudio.boutique.dto.ReviewDTO;
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductReviewsChangedEvent;
 import com.anvistudio.boutique.model.Review;
 import com.anvistudio.boutique.model.Product;
 import com.anvistudio.boutique.model.User;
+import com.anvistudio.boutique.repository.ReviewHelpfulVoteRepository;
 import com.anvistudio.boutique.repository.ReviewRepository;
+import com.anvistudio.boutique.repository.ReviewRepositoryCustom;
 import com.anvistudio.boutique.repository.UserRepository;
 import com.anvistudio.boutique.repository.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,11 +36,19 @@ public class ReviewService {
     private final ReviewRepository reviewRepository; // CRITICAL FIX: Made private
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final ReviewHelpfulVoteRepository helpfulVoteRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ReviewService(ReviewRepository reviewRepository, UserRepository userRepository, ProductRepository productRepository) {
+    // Upper bound for a single page of reviews
+    private static final int MAX_REVIEW_PAGE_SIZE = 50;
+
+    public ReviewService(ReviewRepository reviewRepository, UserRepository userRepository, ProductRepository productRepository,
+                         ReviewHelpfulVoteRepository helpfulVoteRepository, ApplicationEventPublisher eventPublisher) {
         this.reviewRepository = reviewRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
+        this.helpfulVoteRepository = helpfulVoteRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -52,10 +75,15 @@ public class ReviewService {
         Optional<Review> existingReviewOptional = reviewRepository.findByUserIdAndProductId(user.getId(), productId);
 
         Review review;
+        // An approved review being edited leaves the rating summary until it is approved again
+        boolean wasApproved = false;
+        int previousRating = 0;
 
         if (existingReviewOptional.isPresent()) {
             // Update existing review
             review = existingReviewOptional.get();
+            wasApproved = Boolean.TRUE.equals(review.getIsApproved());
+            previousRating = review.getRating();
             review.setRating(rating);
             review.setComment(comment);
             review.setIsApproved(false); // Reset approval status upon update (requires admin re-review)
@@ -69,8 +97,13 @@ public class ReviewService {
             review.setIsApproved(false); // New reviews require approval
         }
 
-        // Save the review
-        return reviewRepository.save(review);
+        // Save the review (an update hides a previously approved review until it is approved again)
+        Review savedReview = reviewRepository.save(review);
+        if (wasApproved) {
+            adjustRatingStats(productId, previousRating, -1);
+        }
+        eventPublisher.publishEvent(new ProductReviewsChangedEvent(productId));
+        return savedReview;
     }
 
     // Add this method to ReviewService.java
@@ -91,24 +124,49 @@ public class ReviewService {
     }
 
     /**
-     * Retrieves the average rating for a given product ID.
+     * Retrieves the average rating for a given product ID (from the stored rating summary).
      */
     public double getAverageRating(Long productId) {
-        return reviewRepository.findAverageRatingByProductId(productId).orElse(0.0);
+        return productRepository.findAverageRating(productId).map(BigDecimal::doubleValue).orElse(0.0);
     }
 
     /**
-     * Retrieves the count of approved reviews for a given product ID.
+     * Retrieves the count of approved reviews for a given product ID (from the stored rating summary).
      */
     public long getReviewCount(Long productId) {
-        return reviewRepository.countByProductIdAndIsApprovedTrue(productId);
+        return productRepository.findRatingCount(productId).map(Integer::longValue).orElse(0L);
     }
 
     /**
-     * Retrieves all approved reviews for a given product ID.
+     * Retrieves one page of approved reviews for a given product ID.
+     * @param sortBy "newest" (default), "helpful", "highest" or "lowest".
+     * @param cursor nextCursor of the previous page, or null for the first page.
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order.
      */
-    public List<Review> getApprovedReviewsForProduct(Long productId) {
-        return reviewRepository.findByProductIdAndIsApprovedTrueOrderByDatePostedDesc(productId);
+    public ProductPageDTO<ReviewDTO> getReviewPage(Long productId, String sortBy, int size, String cursor) {
+        int pageSize = Math.max(1, Math.min(size, MAX_REVIEW_PAGE_SIZE));
+        PageCursor after = (cursor == null || cursor.isBlank()) ? null : PageCursor.decode(cursor, ReviewRepositoryCustom.sortOrder(sortBy));
+        return reviewRepository.findApprovedPage(productId, getReviewCount(productId), sortBy, pageSize, after);
+    }
+
+    /**
+     * Records the user's "helpful" vote for an approved review; each user counts once per review.
+     * @throws IllegalArgumentException if the product has no such approved review.
+     * @throws IllegalStateException if the user already voted on the review.
+     */
+    @Transactional
+    public void markReviewHelpful(String username, Long productId, Long reviewId) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+
+        if (helpfulVoteRepository.insertIgnore(productId, reviewId, user.getId()) == 0) {
+            if (reviewRepository.existsByIdAndProductIdAndIsApprovedTrue(reviewId, productId)) {
+                throw new IllegalStateException("You have already marked this review as helpful.");
+            }
+            throw new IllegalArgumentException("Review not found.");
+        }
+        reviewRepository.incrementHelpfulCount(productId, reviewId);
+        eventPublisher.publishEvent(new ProductReviewsChangedEvent(productId));
     }
 
     /**
@@ -134,8 +192,14 @@ public class ReviewService {
     public void approveReview(Long reviewId) {
         Review review = getReviewById(reviewId)
                 .orElseThrow(() -> new IllegalArgumentException("Review not found."));
+        if (Boolean.TRUE.equals(review.getIsApproved())) {
+            return; // Already counted
+        }
+        Long productId = review.getProduct().getId();
         review.setIsApproved(true);
         reviewRepository.save(review);
+        adjustRatingStats(productId, review.getRating(), 1);
+        eventPublisher.publishEvent(new ProductReviewsChangedEvent(productId));
     }
 
     /**
@@ -143,6 +207,73 @@ public class ReviewService {
      */
     @Transactional
     public void deleteReview(Long reviewId) {
-        reviewRepository.deleteById(reviewId);
+        getReviewById(reviewId).ifPresent(review -> {
+            Long productId = review.getProduct().getId();
+            boolean wasApproved = Boolean.TRUE.equals(review.getIsApproved());
+            helpfulVoteRepository.deleteByReviewId(reviewId);
+            reviewRepository.delete(review);
+            if (wasApproved) {
+                adjustRatingStats(productId, review.getRating(), -1);
+            }
+            eventPublisher.publishEvent(new ProductReviewsChangedEvent(productId));
+        });
+    }
+
+    // --- Rating summary (RatingStats on the product) ---
+
+    /**
+     * Adds or removes one approved rating in the product's stored summary. The UPDATE increments the
+     * counters in place, so concurrent moderation actions cannot lose each other's changes.
+     */
+    private void adjustRatingStats(Long productId, int rating, int delta) {
+        productRepository.adjustRatingStats(productId, rating, delta);
+        // Listing cards show the rating, so the catalog indexes and caches pick up the new summary
+        productRepository.findById(productId)
+                .ifPresent(product -> eventPublisher.publishEvent(CatalogChangedEvent.saved(product)));
+    }
+
+    /**
+     * Recomputes the rating summaries from the approved reviews once at startup and fixes any that differ
+     * (rows that predate the summary columns, or changes made directly in the database).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileRatingStats() {
+        Map<Long, int[]> actualHistograms = new HashMap<>();
+        for (Object[] row : reviewRepository.countApprovedByProductAndRating()) {
+            int rating = ((Number) row[1]).intValue();
+            if (rating >= 1 && rating <= 5) {
+                actualHistograms.computeIfAbsent((Long) row[0], id -> new int[5])[rating - 1] = ((Number) row[2]).intValue();
+            }
+        }
+
+        int fixed = 0;
+        for (Object[] row : productRepository.findStoredRatingHistograms()) {
+            Long productId = (Long) row[0];
+            int[] stored = new int[5];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = ((Number) row[i + 1]).intValue();
+            }
+            int[] actual = actualHistograms.getOrDefault(productId, new int[5]);
+            if (!Arrays.equals(stored, actual)) {
+                int count = 0;
+                long sum = 0;
+                for (int i = 0; i < actual.length; i++) {
+                    count += actual[i];
+                    sum += (long) (i + 1) * actual[i];
+                }
+                BigDecimal average = count > 0
+                        ? BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO;
+                productRepository.overwriteRatingStats(productId, count, sum, average,
+                        actual[0], actual[1], actual[2], actual[3], actual[4]);
+                fixed++;
+            }
+        }
+
+        if (fixed > 0) {
+            eventPublisher.publishEvent(CatalogChangedEvent.bulkUpdated());
+            System.out.println("CATALOG INFO: Reconciled rating summary for " + fixed + " products.");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.event.CatalogChangedEvent;
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.model.StockReservation;
+import com.anvistudio.boutique.repository.ProductRepository;
+import com.anvistudio.boutique.repository.StockReservationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds stock for a checkout so that a limited product cannot be paid for by more buyers than there are units.
+ *
+ * Opening the checkout reserves the cart: each line takes its quantity out of products.stock_quantity with one
+ * conditional UPDATE (... WHERE stock_quantity >= ?) and records its hold, in a short transaction of its own.
+ * The row lock therefore lasts one line, not the whole cart or checkout, and hundreds of buyers of the same
+ * product queue for microseconds instead of for each other's payment. Since the lines commit one by one, a line
+ * that fails is compensated by releasing the lines reserved before it. Lines are reserved in product id order.
+ * Products known to be sold out are rejected from memory without locking their row.
+ *
+ * products.stock_quantity is therefore the stock that can still be sold: units held by open checkouts are
+ * already taken out of it, and come back when their hold is released.
+ *
+ * Placing the order keeps the held stock (COMMITTED); cancelling or returning the order puts the units back.
+ * Holds that are not used within the TTL are released by a periodic sweep. Re-opening the checkout extends the
+ * hold of unchanged lines and releases the rest.
+ */
+@Service
+public class StockReservationService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final StockReservationRepository reservationRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long ttlMillis;
+
+    // Products whose stock reached zero; cleared when stock is put back or the product is saved
+    private final Set<Long> soldOut = ConcurrentHashMap.newKeySet();
+
+    public StockReservationService(StockReservationRepository reservationRepository, ProductRepository productRepository,
+                                   PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                                   @Value("${boutique.checkout.reservation-ttl-minutes:15}") long ttlMinutes) {
+        this.reservationRepository = reservationRepository;
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    /**
+     * Reserves the cart (productId -> quantity) for the user's checkout, replacing any earlier hold.
+     * Every line is reserved in a transaction of its own. If a line cannot be reserved, the lines this call
+     * already reserved are released again before the error is thrown; holds that were only extended stay.
+     * Should that release fail too, the TTL sweep puts the stock back.
+     * @return when the hold expires.
+     * @throws IllegalStateException if a product does not have enough stock left.
+     */
+    public Date reserve(Long userId, Map<Long, Integer> quantities) {
+        Date expiresAt = new Date(System.currentTimeMillis() + ttlMillis);
+        Map<Long, Integer> toReserve = new TreeMap<>(quantities);
+
+        // Re-opened checkout: unchanged lines keep their hold, the others are released
+        for (StockReservation hold : reservationRepository.findByUserIdAndStatus(userId, StockReservation.Status.HELD)) {
+            if (hold.getQuantity().equals(toReserve.get(hold.getProductId())) && extend(hold, expiresAt)) {
+                toReserve.remove(hold.getProductId());
+            } else {
+                releaseNow(hold);
+            }
+        }
+
+        List<StockReservation> reserved = new ArrayList<>(toReserve.size());
+        for (Map.Entry<Long, Integer> line : toReserve.entrySet()) {
+            StockReservation hold = soldOut.contains(line.getKey()) ? null
+                    : transactionTemplate.execute(status -> reserveLine(userId, line.getKey(), line.getValue(), expiresAt));
+            if (hold == null) {
+                releaseReserved(reserved);
+                throw outOfStock(line.getKey(), line.getValue());
+            }
+            reserved.add(hold);
+        }
+        return expiresAt;
+    }
+
+    /**
+     * Turns the user's hold into sold stock when the order is placed. Runs in the order's transaction, so
+     * a failed order also undoes this. Lines the hold does not cover (it expired and was released, or the cart
+     * changed since checkout opened) are taken from stock now; surplus held stock is put back.
+     * @throws IllegalStateException if a product does not have enough stock left.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void commit(Long userId, Map<Long, Integer> quantities) {
+        Map<Long, Integer> covered = new HashMap<>();
+        Map<Long, Integer> changed = new HashMap<>();
+        for (StockReservation hold : reservationRepository.findByUserIdAndStatus(userId, StockReservation.Status.HELD)) {
+            if (!quantities.containsKey(hold.getProductId())) {
+                release(hold, changed);
+            } else if (reservationRepository.transition(hold.getId(),
+                    StockReservation.Status.HELD, StockReservation.Status.COMMITTED) == 1) {
+                covered.merge(hold.getProductId(), hold.getQuantity(), Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            Long productId = line.getKey();
+            int missing = line.getValue() - covered.getOrDefault(productId, 0);
+            if (missing > 0) {
+                if (productRepository.decrementStock(productId, missing) == 0) {
+                    throw outOfStock(productId, line.getValue());
+                }
+                changed.merge(productId, -missing, Integer::sum);
+            } else if (missing < 0) {
+                restock(productId, -missing, changed);
+            }
+        }
+        publishStockChanged(changed);
+    }
+
+    /**
+     * Puts the units of a cancelled or returned order (productId -> quantity) back into stock, in the caller's
+     * transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void restock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> changed = new HashMap<>();
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            restock(line.getKey(), line.getValue(), changed);
+        }
+        publishStockChanged(changed);
+    }
+
+    /**
+     * Puts back the stock of holds whose TTL has passed.
+     */
+    @Scheduled(fixedDelayString = "${boutique.checkout.reservation-sweep-ms:60000}")
+    public void releaseExpired() {
+        List<StockReservation> expired;
+        do {
+            expired = reservationRepository.findByStatusAndExpiresAtBeforeOrderByExpiresAt(
+                    StockReservation.Status.HELD, new Date(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+            List<StockReservation> batch = expired;
+            Integer released = transactionTemplate.execute(status -> {
+                Map<Long, Integer> changed = new HashMap<>();
+                int count = 0;
+                for (StockReservation hold : batch) {
+                    count += release(hold, changed);
+                }
+                publishStockChanged(changed);
+                return count;
+            });
+            if (released != null && released > 0) {
+                System.out.println("CHECKOUT INFO: Released " + released + " expired stock reservations.");
+            }
+        } while (expired.size() == SWEEP_BATCH_SIZE);
+    }
+
+    /**
+     * An admin save may have restocked the product.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getType() == CatalogChangedEvent.Type.BULK_UPDATED) {
+            soldOut.clear();
+        } else {
+            soldOut.remove(event.getProductId());
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Internals
+    // ---------------------------------------------------------------------
+
+    private boolean extend(StockReservation hold, Date expiresAt) {
+        Integer extended = transactionTemplate.execute(status ->
+                reservationRepository.extend(hold.getId(), StockReservation.Status.HELD, expiresAt));
+        return extended != null && extended == 1;
+    }
+
+    /**
+     * Takes one line out of stock and records its hold; the row lock lasts until this short transaction commits.
+     * @return the hold, or null if there is not enough stock.
+     */
+    private StockReservation reserveLine(Long userId, Long productId, int quantity, Date expiresAt) {
+        if (productRepository.decrementStock(productId, quantity) == 0) {
+            return null;
+        }
+        StockReservation hold = reservationRepository.save(new StockReservation(userId, productId, quantity, expiresAt));
+        Map<Long, Integer> changed = new HashMap<>();
+        changed.put(productId, -quantity);
+        publishStockChanged(changed);
+        return hold;
+    }
+
+    /**
+     * Compensates a failed reserve() by releasing the lines it reserved, each in its own transaction.
+     */
+    private void releaseReserved(List<StockReservation> reserved) {
+        for (StockReservation hold : reserved) {
+            try {
+                releaseNow(hold);
+            } catch (RuntimeException e) {
+                System.err.println("CHECKOUT ERROR: Could not release reservation " + hold.getId()
+                        + "; it is released when it expires: " + e.getMessage());
+            }
+        }
+    }
+
+    private void releaseNow(StockReservation hold) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Integer> changed = new HashMap<>();
+            release(hold, changed);
+            publishStockChanged(changed);
+        });
+    }
+
+    /**
+     * Releases the hold unless it was committed or released concurrently.
+     * @return 1 if this call released it.
+     */
+    private int release(StockReservation hold, Map<Long, Integer> changed) {
+        if (reservationRepository.transition(hold.getId(),
+                StockReservation.Status.HELD, StockReservation.Status.RELEASED) == 0) {
+            return 0;
+        }
+        restock(hold.getProductId(), hold.getQuantity(), changed);
+        return 1;
+    }
+
+    private void restock(Long productId, int quantity, Map<Long, Integer> changed) {
+        productRepository.incrementStock(productId, quantity);
+        soldOut.remove(productId);
+        changed.merge(productId, quantity, Integer::sum);
+    }
+
+    /**
+     * Builds the error for a line that cannot be reserved, remembering products that are sold out.
+     */
+    private IllegalStateException outOfStock(Long productId, int requested) {
+        Integer left = productRepository.findAvailableStock(productId).orElse(null);
+        if (left == null) {
+            return new IllegalStateException("A product in your cart is no longer available.");
+        }
+        String name = productRepository.findById(productId).map(Product::getName).orElse("A product in your cart");
+        if (left <= 0) {
+            soldOut.add(productId);
+            return new IllegalStateException(name + " is out of stock.");
+        }
+        soldOut.remove(productId);
+        return new IllegalStateException("Only " + left + " left of " + name + " (you requested " + requested + ").");
+    }
+
+    private void publishStockChanged(Map<Long, Integer> changed) {
+        changed.values().removeIf(delta -> delta == 0);
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new ProductStockChangedEvent(changed));
+        }
+    }
+}
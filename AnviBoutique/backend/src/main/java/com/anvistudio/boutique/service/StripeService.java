@@ -6,11 +6,11 @@ import com.stripe.exception.StripeException;
 import com.stripe.model.Customer;
 import com.stripe.model.PaymentIntent;
 import com.stripe.param.CustomerCreateParams;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -73,10 +73,8 @@ public class StripeService {
             throw new IllegalStateException("Cannot create a payment intent for an empty cart.");
         }
 
-        // Calculate total amount in smallest unit (e.g., paise)
-        Long amountInCents = BigDecimal.valueOf(cartService.getCartTotal(userId))
-                .multiply(BigDecimal.valueOf(100))
-                .longValue();
+        // Total amount in the smallest unit (paise), exact
+        Long amountInCents = CartService.getTotalPaise(cartItems);
 
         // 1. Create or retrieve Stripe Customer ID
         // NOTE: This assumes we successfully create a customer every time, which is fine for test mode.
@@ -104,11 +102,17 @@ public class StripeService {
 
 
     // Option 1: Create overloaded method
-public String createPaymentIntent(double totalPrice) throws StripeException {
-    // Calculate amount in smallest currency unit
-    Long amountInCents = BigDecimal.valueOf(totalPrice)
-            .multiply(BigDecimal.valueOf(100))
-            .longValue();
+public String createPaymentIntent(long amountInPaise) throws StripeException {
+    return createPaymentIntent(amountInPaise, null);
+}
+
+/**
+ * Creates a PaymentIntent for the amount. With an idempotency key, Stripe answers repeated calls with the same key
+ * (and amount) with the PaymentIntent created first, for 24 hours, instead of creating another one.
+ */
+public String createPaymentIntent(long amountInPaise, String idempotencyKey) throws StripeException {
+    // Amount is already in the smallest currency unit
+    Long amountInCents = amountInPaise;
 
     PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
             .setAmount(amountInCents)
@@ -119,7 +123,10 @@ public String createPaymentIntent(double totalPrice) throws StripeException {
                     .build())
             .build();
 
-    PaymentIntent paymentIntent = PaymentIntent.create(params);
+    RequestOptions options = idempotencyKey != null
+            ? RequestOptions.builder().setIdempotencyKey(idempotencyKey).build()
+            : RequestOptions.getDefault();
+    PaymentIntent paymentIntent = PaymentIntent.create(params, options);
     return paymentIntent.getClientSecret();
 }
 
@@ -1,5 +1,6 @@
 package com.anvistudio.boutique.service;
 
+import com.anvistudio.boutique.dto.WishlistItemDTO;
 import com.anvistudio.boutique.model.Product;
 import com.anvistudio.boutique.model.User;
 import com.anvistudio.boutique.model.Wishlist;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class WishlistService {
@@ -55,10 +57,12 @@ public class WishlistService {
     }
 
     /**
-     * Retrieves all wishlist items (and associated products) for a user.
+     * Retrieves all wishlist items (with product card data) for a user.
      */
-    public List<Wishlist> getWishlistItems(Long userId) {
-        return wishlistRepository.findByUserId(userId);
+    public List<WishlistItemDTO> getWishlistItems(Long userId) {
+        return wishlistRepository.findProductCardsByUserId(userId).stream()
+                .map(WishlistItemDTO::of)
+                .collect(Collectors.toList());
     }
 
     
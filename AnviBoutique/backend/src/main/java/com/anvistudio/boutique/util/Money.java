@@ -0,0 +1,72 @@
+package com.anvistudio.boutique.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact money arithmetic on {@code long} minor units (paise; 1 rupee = 100 paise).
+ *
+ * Prices stay {@link BigDecimal} rupee columns in the database and JSON. They are converted to paise
+ * once at the edge ({@link #toPaise(BigDecimal)}), and discounts, line totals, cart totals and
+ * payment amounts are then plain long arithmetic: no per-step BigDecimal allocation and no
+ * floating-point drift, with one conversion back ({@link #toRupees(long)}) where a BigDecimal is stored.
+ *
+ * Rounding is HALF_UP to whole paise, the same as Product#getDiscountedPrice always used.
+ */
+public final class Money {
+
+    public static final long PAISE_PER_RUPEE = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Rupee amount -> paise, rounding HALF_UP to whole paise.
+     * @throws ArithmeticException if the amount does not fit into a long number of paise.
+     */
+    public static long toPaise(BigDecimal rupees) {
+        return rupees.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Paise -> rupee amount with scale 2 (the scale of the price columns).
+     */
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    /**
+     * Price after a percentage discount, rounded HALF_UP to whole paise. Discounts <= 0 leave the price unchanged.
+     */
+    public static long applyDiscount(long paise, int discountPercent) {
+        if (discountPercent <= 0) {
+            return paise;
+        }
+        return divideHalfUp(Math.multiplyExact(paise, 100 - discountPercent), 100);
+    }
+
+    /**
+     * Line total: unit price times quantity.
+     * @throws ArithmeticException on overflow.
+     */
+    public static long times(long paise, int quantity) {
+        return Math.multiplyExact(paise, quantity);
+    }
+
+    /**
+     * Plain two-decimal rupee text without currency symbol, e.g. 123450 -> "1234.50".
+     */
+    public static String format(long paise) {
+        long abs = Math.abs(paise);
+        String text = (abs / PAISE_PER_RUPEE) + "." + (abs % PAISE_PER_RUPEE < 10 ? "0" : "") + (abs % PAISE_PER_RUPEE);
+        return paise < 0 ? "-" + text : text;
+    }
+
+    /**
+     * Integer division rounding half away from zero (HALF_UP).
+     */
+    private static long divideHalfUp(long dividend, long divisor) {
+        long half = divisor / 2;
+        return dividend >= 0 ? (dividend + half) / divisor : -((-dividend + half) / divisor);
+    }
+}
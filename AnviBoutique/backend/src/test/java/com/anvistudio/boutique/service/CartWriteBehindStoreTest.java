@@ -0,0 +1,164 @@
+package com.anvistudio.boutique.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CartWriteBehindStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+    private Path journal;
+    private Path flushing;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        journal = directory.resolve("cart-journal.log");
+        flushing = directory.resolve("cart-journal.log.flushing");
+    }
+
+    private CartWriteBehindStore store(boolean enabled) {
+        return new CartWriteBehindStore(jdbcTemplate, transactionManager, enabled, journal.toString());
+    }
+
+    @Test
+    void replayAppliesTheLatestValuesOfBothJournalsAndDeletesThem() throws Exception {
+        // The rotated journal of a flush that did not commit, then the journal written after it
+        Files.writeString(flushing, "S 1 10 2\nS 1 11 1\nS 2 20 5\n");
+        Files.writeString(journal, "S 1 10 4\nS 1 11 0\nC 2\nS 2 21 1\nS 3 3");
+
+        store(false).recoverOnStartup();
+
+        assertEquals(List.of(List.of(2L)), params(batch("DELETE FROM cart_items WHERE user_id = ?")));
+        assertEquals(List.of(List.of(1L, 11L)), params(batch("DELETE FROM cart_items WHERE user_id = ? AND")));
+        // (user, quantity, date, product, quantity); the torn last line is skipped
+        List<List<Object>> upserts = params(batch("INSERT INTO cart_items"));
+        assertEquals(2, upserts.size());
+        assertEquals(List.of(1L, 4, 10L, 4), withoutDate(upserts.get(0)));
+        assertEquals(List.of(2L, 1, 21L, 1), withoutDate(upserts.get(1)));
+
+        assertFalse(Files.exists(flushing));
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    void replayKeepsTheJournalWhenTheWriteFails() throws Exception {
+        Files.writeString(journal, "S 1 10 2\n");
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> store(false).recoverOnStartup());
+        assertTrue(Files.exists(journal));
+    }
+
+    @Test
+    void nothingToReplayWritesNothing() {
+        store(false).recoverOnStartup();
+
+        verify(jdbcTemplate, never()).batchUpdate(any(String.class), anyList());
+    }
+
+    @Test
+    void mutationsAreJournaledBeforeTheyAreFlushed() throws Exception {
+        CartWriteBehindStore store = store(true);
+        store.add(7L, 70L, 1);
+        store.add(7L, 70L, 2);
+        store.setQuantity(7L, 70L, 5);
+
+        assertEquals(List.of("S 7 70 1", "S 7 70 3", "S 7 70 5"), Files.readAllLines(journal));
+        assertEquals(Map.of(70L, 5), store.getQuantities(7L));
+    }
+
+    @Test
+    void failedCheckoutFlushFailsAndKeepsTheChangesPending() {
+        CartWriteBehindStore store = store(true);
+        store.add(7L, 70L, 2);
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(new int[]{1});
+
+        assertThrows(IllegalStateException.class, () -> store.flushUser(7L));
+
+        // The retry writes the restored change
+        store.flushUser(7L);
+        List<List<Object>> upserts = params(lastBatch("INSERT INTO cart_items"));
+        assertEquals(List.of(7L, 2, 70L, 2), withoutDate(upserts.get(0)));
+    }
+
+    /**
+     * The rows of every batchUpdate call with the statement, one list per call.
+     */
+    private List<List<Object[]>> batches(String sqlPrefix) {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(sql.capture(), args.capture());
+        List<List<Object[]>> calls = new ArrayList<>();
+        for (int i = 0; i < sql.getAllValues().size(); i++) {
+            if (matches(sql.getAllValues().get(i), sqlPrefix)) {
+                calls.add(args.getAllValues().get(i));
+            }
+        }
+        return calls;
+    }
+
+    private List<Object[]> batch(String sqlPrefix) {
+        List<Object[]> rows = new ArrayList<>();
+        batches(sqlPrefix).forEach(rows::addAll);
+        return rows;
+    }
+
+    private List<Object[]> lastBatch(String sqlPrefix) {
+        List<List<Object[]>> calls = batches(sqlPrefix);
+        return calls.get(calls.size() - 1);
+    }
+
+    /**
+     * "DELETE ... WHERE user_id = ?" must not also match the per-product DELETE.
+     */
+    private static boolean matches(String sql, String prefix) {
+        return sql.startsWith(prefix) && (!prefix.endsWith("?") || sql.length() == prefix.length());
+    }
+
+    private static List<List<Object>> params(List<Object[]> rows) {
+        List<List<Object>> result = new ArrayList<>();
+        for (Object[] row : rows) {
+            result.add(List.of(row));
+        }
+        return result;
+    }
+
+    private static List<Object> withoutDate(List<Object> upsert) {
+        return List.of(upsert.get(0), upsert.get(1), upsert.get(3), upsert.get(4));
+    }
+}
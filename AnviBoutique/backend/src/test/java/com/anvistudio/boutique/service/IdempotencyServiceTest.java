@@ -0,0 +1,205 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.model.IdempotencyRecord;
+import com.anvistudio.boutique.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private static final String SCOPE = "payment.finalize";
+    private static final Long USER = 7L;
+    private static final String KEY = "9f1c2d";
+    private static final Map<String, String> REQUEST = Map.of("addressId", "3", "paymentMode", "COD");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private IdempotencyRecordRepository recordRepository;
+    private PlatformTransactionManager transactionManager;
+    private final AtomicInteger runs = new AtomicInteger();
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        recordRepository = mock(IdempotencyRecordRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(recordRepository.saveAndFlush(any(IdempotencyRecord.class))).thenAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            record.setId(nextId++);
+            return record;
+        });
+        when(recordRepository.complete(anyLong(), anyInt(), anyString(), any(Date.class),
+                eq(IdempotencyRecord.Status.IN_PROGRESS), eq(IdempotencyRecord.Status.COMPLETED))).thenReturn(1);
+    }
+
+    private IdempotencyService service() {
+        return new IdempotencyService(recordRepository, objectMapper, transactionManager, 24, 60);
+    }
+
+    private Supplier<ResponseEntity<Map<String, String>>> placeOrder() {
+        return () -> ResponseEntity.ok(Map.of("orderId", String.valueOf(100 + runs.incrementAndGet())));
+    }
+
+    @Test
+    void aRetryIsAnsweredWithTheStoredResponse() {
+        IdempotencyService service = service();
+
+        ResponseEntity<Map<String, String>> first = service.execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+        ResponseEntity<Map<String, String>> retry = service.execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+
+        assertEquals(1, runs.get());
+        assertEquals(Map.of("orderId", "101"), first.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(Map.of("orderId", "101"), retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        // Replayed from memory: the key was claimed once
+        verify(recordRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void aRetryOnAnotherInstanceIsAnsweredFromTheDatabase() {
+        service().execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+        IdempotencyRecord completed = completedRecord(claimedRecord(), "{\"orderId\":\"101\"}");
+        when(recordRepository.saveAndFlush(any(IdempotencyRecord.class))).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(recordRepository.findByScopeAndUserIdAndIdempotencyKey(SCOPE, USER, KEY)).thenReturn(Optional.of(completed));
+
+        ResponseEntity<Map<String, String>> retry = service().execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+
+        assertEquals(1, runs.get());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(Map.of("orderId", "101"), retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void aKeyReusedForADifferentRequestIsRejected() {
+        IdempotencyService service = service();
+        service.execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+
+        ResponseEntity<Map<String, String>> reused = service.execute(SCOPE, USER, KEY,
+                Map.of("addressId", "4", "paymentMode", "COD"), placeOrder());
+
+        assertEquals(HttpStatus.CONFLICT, reused.getStatusCode());
+        assertEquals("Idempotency-Key was already used for a different request.", reused.getBody().get("error"));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void aRequestStillRunningUnderTheKeyGetsAConflict() {
+        IdempotencyRecord running = new IdempotencyRecord(SCOPE, USER, KEY, "hash", new Date(System.currentTimeMillis() + 60_000));
+        running.setId(50L);
+        when(recordRepository.saveAndFlush(any(IdempotencyRecord.class))).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(recordRepository.findByScopeAndUserIdAndIdempotencyKey(SCOPE, USER, KEY)).thenReturn(Optional.of(running));
+
+        ResponseEntity<Map<String, String>> response = service().execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertTrue(response.getBody().get("error").contains("still being processed"));
+        assertEquals(0, runs.get());
+        verify(recordRepository, never()).release(anyLong(), any());
+    }
+
+    @Test
+    void aClaimLeftByADeadRequestIsTakenOver() {
+        IdempotencyRecord stale = new IdempotencyRecord(SCOPE, USER, KEY, "hash", new Date(System.currentTimeMillis() - 1));
+        stale.setId(50L);
+        when(recordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenAnswer(invocation -> {
+                    IdempotencyRecord record = invocation.getArgument(0);
+                    record.setId(51L);
+                    return record;
+                });
+        when(recordRepository.findByScopeAndUserIdAndIdempotencyKey(SCOPE, USER, KEY)).thenReturn(Optional.of(stale));
+        when(recordRepository.release(50L, IdempotencyRecord.Status.IN_PROGRESS)).thenReturn(1);
+
+        ResponseEntity<Map<String, String>> response = service().execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, runs.get());
+        verify(recordRepository).complete(eq(51L), eq(200), anyString(), any(Date.class),
+                eq(IdempotencyRecord.Status.IN_PROGRESS), eq(IdempotencyRecord.Status.COMPLETED));
+    }
+
+    @Test
+    void aFailedRequestIsRolledBackAndReleasesTheKey() {
+        IdempotencyService service = service();
+
+        ResponseEntity<Map<String, String>> failed = service.execute(SCOPE, USER, KEY, REQUEST,
+                () -> ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Silk Saree is out of stock.")));
+
+        assertEquals(HttpStatus.CONFLICT, failed.getStatusCode());
+        ArgumentCaptor<TransactionStatus> transaction = ArgumentCaptor.forClass(TransactionStatus.class);
+        verify(transactionManager, times(2)).commit(transaction.capture());
+        assertTrue(transaction.getAllValues().get(1).isRollbackOnly());
+        verify(recordRepository).release(1L, IdempotencyRecord.Status.IN_PROGRESS);
+        verify(recordRepository, never()).complete(anyLong(), anyInt(), anyString(), any(), any(), any());
+
+        // The key is free again, so the retry runs
+        ResponseEntity<Map<String, String>> retry = service.execute(SCOPE, USER, KEY, REQUEST, placeOrder());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void anExceptionReleasesTheKey() {
+        assertThrows(IllegalStateException.class, () -> service().execute(SCOPE, USER, KEY, REQUEST, () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        verify(recordRepository).release(1L, IdempotencyRecord.Status.IN_PROGRESS);
+    }
+
+    @Test
+    void anInvalidKeyIsRejected() {
+        ResponseEntity<Map<String, String>> response = service().execute(SCOPE, USER, "x".repeat(101), REQUEST, placeOrder());
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, runs.get());
+        verify(recordRepository, never()).saveAndFlush(any());
+    }
+
+    private IdempotencyRecord claimedRecord() {
+        ArgumentCaptor<IdempotencyRecord> claim = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(recordRepository).saveAndFlush(claim.capture());
+        return claim.getValue();
+    }
+
+    private static IdempotencyRecord completedRecord(IdempotencyRecord claim, String responseBody) {
+        claim.setStatus(IdempotencyRecord.Status.COMPLETED);
+        claim.setResponseStatus(200);
+        claim.setResponseBody(responseBody);
+        claim.setExpiresAt(new Date(System.currentTimeMillis() + 3_600_000));
+        return claim;
+    }
+}
@@ -0,0 +1,232 @@
+package com.anvistudio.boutique.service;
+
+import com.anvistudio.boutique.event.ProductStockChangedEvent;
+import com.anvistudio.boutique.model.Product;
+import com.anvistudio.boutique.model.StockReservation;
+import com.anvistudio.boutique.repository.ProductRepository;
+import com.anvistudio.boutique.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockReservationServiceTest {
+
+    private static final Long USER = 7L;
+
+    private StockReservationRepository reservationRepository;
+    private ProductRepository productRepository;
+    private PlatformTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private StockReservationService service;
+    private long nextId = 100;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository = mock(StockReservationRepository.class);
+        productRepository = mock(ProductRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(reservationRepository.save(any(StockReservation.class))).thenAnswer(invocation -> {
+            StockReservation saved = invocation.getArgument(0);
+            saved.setId(nextId++);
+            return saved;
+        });
+        service = new StockReservationService(reservationRepository, productRepository, transactionManager,
+                eventPublisher, 15);
+    }
+
+    @Test
+    void reserveTakesEachLineInATransactionOfItsOwn() {
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+
+        service.reserve(USER, Map.of(1L, 2, 2L, 1));
+
+        verify(productRepository).decrementStock(1L, 2);
+        verify(productRepository).decrementStock(2L, 1);
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(List.of(Map.of(1L, -2), Map.of(2L, -1)), stockChanges());
+    }
+
+    @Test
+    void reserveReleasesTheLinesItReservedWhenALineIsOutOfStock() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(productRepository.decrementStock(2L, 3)).thenReturn(0);
+        when(reservationRepository.transition(anyLong(), eq(StockReservation.Status.HELD),
+                eq(StockReservation.Status.RELEASED))).thenReturn(1);
+        when(productRepository.findAvailableStock(2L)).thenReturn(Optional.of(1));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product("Silk Saree")));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> service.reserve(USER, Map.of(1L, 2, 2L, 3)));
+
+        assertEquals("Only 1 left of Silk Saree (you requested 3).", e.getMessage());
+        verify(productRepository).incrementStock(1L, 2);
+        verify(productRepository, never()).incrementStock(eq(2L), anyInt());
+        assertEquals(List.of(Map.of(1L, -2), Map.of(1L, 2)), stockChanges());
+    }
+
+    @Test
+    void reserveRejectsAKnownSoldOutProductWithoutLockingItsRow() {
+        when(productRepository.decrementStock(1L, 1)).thenReturn(0);
+        when(productRepository.findAvailableStock(1L)).thenReturn(Optional.of(0));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product("Silk Saree")));
+
+        assertThrows(IllegalStateException.class, () -> service.reserve(USER, Map.of(1L, 1)));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.reserve(USER, Map.of(1L, 1)));
+
+        assertEquals("Silk Saree is out of stock.", e.getMessage());
+        verify(productRepository, times(1)).decrementStock(1L, 1);
+    }
+
+    @Test
+    void reserveKeepsUnchangedHoldsAndReleasesTheOthers() {
+        StockReservation unchanged = hold(1L, 2);
+        StockReservation changed = hold(2L, 5);
+        when(reservationRepository.findByUserIdAndStatus(USER, StockReservation.Status.HELD))
+                .thenReturn(List.of(unchanged, changed));
+        when(reservationRepository.extend(eq(unchanged.getId()), eq(StockReservation.Status.HELD), any(Date.class)))
+                .thenReturn(1);
+        when(reservationRepository.transition(changed.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.RELEASED)).thenReturn(1);
+        when(productRepository.decrementStock(2L, 1)).thenReturn(1);
+
+        service.reserve(USER, Map.of(1L, 2, 2L, 1));
+
+        verify(productRepository, never()).decrementStock(eq(1L), anyInt());
+        verify(productRepository).incrementStock(2L, 5);
+        verify(productRepository).decrementStock(2L, 1);
+    }
+
+    @Test
+    void commitTakesTheStockAgainWhenTheSweepReleasedTheHoldConcurrently() {
+        StockReservation held = hold(1L, 2);
+        when(reservationRepository.findByUserIdAndStatus(USER, StockReservation.Status.HELD)).thenReturn(List.of(held));
+        // The sweep won the HELD -> RELEASED transition and already put the units back
+        when(reservationRepository.transition(held.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.COMMITTED)).thenReturn(0);
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+
+        service.commit(USER, Map.of(1L, 2));
+
+        verify(productRepository).decrementStock(1L, 2);
+        verify(productRepository, never()).incrementStock(anyLong(), anyInt());
+        assertEquals(List.of(Map.of(1L, -2)), stockChanges());
+    }
+
+    @Test
+    void commitFailsWhenTheReleasedStockWasSoldMeanwhile() {
+        StockReservation held = hold(1L, 2);
+        when(reservationRepository.findByUserIdAndStatus(USER, StockReservation.Status.HELD)).thenReturn(List.of(held));
+        when(reservationRepository.transition(held.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.COMMITTED)).thenReturn(0);
+        when(productRepository.decrementStock(1L, 2)).thenReturn(0);
+        when(productRepository.findAvailableStock(1L)).thenReturn(Optional.of(0));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product("Silk Saree")));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.commit(USER, Map.of(1L, 2)));
+
+        assertEquals("Silk Saree is out of stock.", e.getMessage());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void commitPutsBackSurplusHeldStockAndReleasesLinesNoLongerInTheCart() {
+        StockReservation larger = hold(1L, 3);
+        StockReservation removed = hold(2L, 1);
+        when(reservationRepository.findByUserIdAndStatus(USER, StockReservation.Status.HELD))
+                .thenReturn(List.of(larger, removed));
+        when(reservationRepository.transition(larger.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.COMMITTED)).thenReturn(1);
+        when(reservationRepository.transition(removed.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.RELEASED)).thenReturn(1);
+
+        service.commit(USER, Map.of(1L, 2));
+
+        verify(productRepository).incrementStock(1L, 1);
+        verify(productRepository).incrementStock(2L, 1);
+        verify(productRepository, never()).decrementStock(anyLong(), anyInt());
+        assertEquals(List.of(Map.of(1L, 1, 2L, 1)), stockChanges());
+    }
+
+    @Test
+    void sweepDoesNotRestockAHoldTheOrderCommittedConcurrently() {
+        StockReservation committed = hold(1L, 2);
+        StockReservation expired = hold(2L, 1);
+        when(reservationRepository.findByStatusAndExpiresAtBeforeOrderByExpiresAt(
+                eq(StockReservation.Status.HELD), any(Date.class), any(Pageable.class)))
+                .thenReturn(List.of(committed, expired));
+        when(reservationRepository.transition(committed.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.RELEASED)).thenReturn(0);
+        when(reservationRepository.transition(expired.getId(), StockReservation.Status.HELD,
+                StockReservation.Status.RELEASED)).thenReturn(1);
+
+        service.releaseExpired();
+
+        verify(productRepository, never()).incrementStock(eq(1L), anyInt());
+        verify(productRepository).incrementStock(2L, 1);
+        assertEquals(List.of(Map.of(2L, 1)), stockChanges());
+    }
+
+    @Test
+    void restockPutsTheUnitsOfACancelledOrderBackAndClearsSoldOut() {
+        when(productRepository.decrementStock(1L, 1)).thenReturn(0, 1);
+        when(productRepository.findAvailableStock(1L)).thenReturn(Optional.of(0));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product("Silk Saree")));
+        assertThrows(IllegalStateException.class, () -> service.reserve(USER, Map.of(1L, 1)));
+
+        service.restock(Map.of(1L, 2, 2L, 1));
+        service.reserve(USER, Map.of(1L, 1));
+
+        verify(productRepository).incrementStock(1L, 2);
+        verify(productRepository).incrementStock(2L, 1);
+        verify(productRepository, times(2)).decrementStock(1L, 1);
+        assertEquals(List.of(Map.of(1L, 2, 2L, 1), Map.of(1L, -1)), stockChanges());
+    }
+
+    private List<Map<Long, Integer>> stockChanges() {
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        List<Map<Long, Integer>> changes = new ArrayList<>();
+        for (Object event : events.getAllValues()) {
+            changes.add(new LinkedHashMap<>(((ProductStockChangedEvent) event).getStockChanges()));
+        }
+        return changes;
+    }
+
+    private StockReservation hold(Long productId, int quantity) {
+        StockReservation hold = new StockReservation(USER, productId, quantity, new Date());
+        hold.setId(nextId++);
+        return hold;
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        return product;
+    }
+}
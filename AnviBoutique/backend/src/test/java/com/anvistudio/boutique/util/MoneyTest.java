@@ -0,0 +1,78 @@
+package com.anvistudio.boutique.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+
+    @Test
+    void toPaiseRoundsHalfUpToWholePaise() {
+        assertEquals(123450, Money.toPaise(new BigDecimal("1234.5")));
+        assertEquals(1001, Money.toPaise(new BigDecimal("10.005")));
+        assertEquals(1000, Money.toPaise(new BigDecimal("10.0049")));
+        assertEquals(2, Money.toPaise(new BigDecimal("0.015")));
+        assertEquals(0, Money.toPaise(new BigDecimal("0.004")));
+        assertEquals(-1001, Money.toPaise(new BigDecimal("-10.005")));
+    }
+
+    @Test
+    void toPaiseRejectsAmountsBeyondLong() {
+        assertThrows(ArithmeticException.class, () -> Money.toPaise(new BigDecimal("1e20")));
+    }
+
+    @Test
+    void toRupeesKeepsTwoDecimals() {
+        assertEquals(new BigDecimal("1234.50"), Money.toRupees(123450));
+        assertEquals(new BigDecimal("0.07"), Money.toRupees(7));
+    }
+
+    @Test
+    void applyDiscountLeavesPriceWithoutDiscount() {
+        assertEquals(99999, Money.applyDiscount(99999, 0));
+        assertEquals(99999, Money.applyDiscount(99999, -5));
+        assertEquals(0, Money.applyDiscount(99999, 100));
+    }
+
+    @Test
+    void applyDiscountRoundsHalfUp() {
+        assertEquals(8, Money.applyDiscount(15, 50));      // 7.5 paise -> 8
+        assertEquals(6699, Money.applyDiscount(9999, 33)); // 6699.33 paise -> 6699
+    }
+
+    /**
+     * Same result as the BigDecimal formula Product#getDiscountedPrice used before prices moved to paise.
+     */
+    @Test
+    void applyDiscountMatchesFormerBigDecimalPricing() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+            int discount = random.nextInt(101);
+            BigDecimal factor = BigDecimal.ONE.subtract(
+                    BigDecimal.valueOf(discount).divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP));
+            BigDecimal expected = price.multiply(factor).setScale(2, RoundingMode.HALF_UP);
+
+            assertEquals(expected, Money.toRupees(Money.applyDiscount(Money.toPaise(price), discount)),
+                    () -> "price " + price + ", discount " + discount);
+        }
+    }
+
+    @Test
+    void timesRejectsOverflow() {
+        assertEquals(300, Money.times(100, 3));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    @Test
+    void formatPadsPaise() {
+        assertEquals("1234.50", Money.format(123450));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-12.00", Money.format(-1200));
+    }
+}
@@ -128,8 +128,8 @@ const Cart = () => {
                   {/* Product Image */}
                   <div className="w-full md:w-32 h-40 bg-gray-100 rounded-2xl overflow-hidden shrink-0">
                     <img 
-                      src={`/api/public/images/${item.product.imageUrl || 'placeholder.jpg'}`} 
-                      alt={item.product.name}
+                      src={`/api/public/images/${item.imageUrl || 'placeholder.jpg'}`} 
+                      alt={item.name}
                       className="w-full h-full object-cover"
                     />
                   </div>
@@ -139,8 +139,8 @@ const Cart = () => {
                     <div>
                       <div className="flex justify-between items-start">
                         <div>
-                          <h3 className="text-lg font-bold text-gray-900 leading-tight">{item.product.name}</h3>
-                          <p className="text-sm text-gray-400 mt-1 uppercase tracking-widest">{item.product.category}</p>
+                          <h3 className="text-lg font-bold text-gray-900 leading-tight">{item.name}</h3>
+                          <p className="text-sm text-gray-400 mt-1 uppercase tracking-widest">{item.category}</p>
                         </div>
                         <button 
                           onClick={() => handleRemoveItem(item.id)}
@@ -170,8 +170,8 @@ const Cart = () => {
                       </div>
 
                       <div className="text-right">
-                        <p className="text-xs text-gray-400">Unit: ₹{item.product.price.toFixed(2)}</p>
-                        <p className="text-xl font-bold text-orange-600">₹{(item.product.price * item.quantity).toFixed(2)}</p>
+                        <p className="text-xs text-gray-400">Unit: ₹{item.unitPrice.toFixed(2)}</p>
+                        <p className="text-xl font-bold text-orange-600">₹{item.lineTotal.toFixed(2)}</p>
                       </div>
                     </div>
                   </div>
@@ -15,6 +15,17 @@ import {
   Lock
 } from 'lucide-react';
 
+const CHECKOUT_KEY_ITEM = 'checkoutIdempotencyKey';
+
+const checkoutKey = () => {
+  let key = sessionStorage.getItem(CHECKOUT_KEY_ITEM);
+  if (!key) {
+    key = crypto.randomUUID();
+    sessionStorage.setItem(CHECKOUT_KEY_ITEM, key);
+  }
+  return key;
+};
+
 const Checkout = () => {
   const location = useLocation();
   const navigate = useNavigate();
@@ -23,12 +34,16 @@ const Checkout = () => {
   const [data, setData] = useState(null);
   const [isProcessing, setIsProcessing] = useState(false);
   const [errorMessage, setErrorMessage] = useState(null);
+  const [waitingRoom, setWaitingRoom] = useState(null); // Flash-sale queue status while waiting for our turn
   
   // Stripe state
   const [stripe, setStripe] = useState(null);
   const [elements, setElements] = useState(null);
   const [cardElement, setCardElement] = useState(null);
   const cardRef = useRef(null);
+  // One key per checkout, kept for the tab: a double submit or retry of finalize returns the order already
+  // placed, and reloading the page reuses the Stripe PaymentIntent instead of creating another one
+  const [idempotencyKey] = useState(checkoutKey);
 
   const selectedAddressId = location.state?.addressId;
 
@@ -45,13 +60,21 @@ const Checkout = () => {
     try {
       setLoading(true);
       const response = await axios.get('http://localhost:8080/api/payment/checkout-data', {
-        withCredentials: true
+        withCredentials: true, headers: { 'Idempotency-Key': idempotencyKey }
       });
+      setWaitingRoom(null);
       setData(response.data);
       loadStripeScript(response.data.publishableKey, response.data.stripeClientSecret);
     } catch (err) {
+      if (err.response?.status === 429) {
+        // Flash sale: wait for our turn and ask again
+        setWaitingRoom(err.response.data || {});
+        setTimeout(fetchCheckoutData, (err.response.data?.retryAfterSeconds || 5) * 1000);
+        return;
+      }
+      setWaitingRoom(null);
       console.error("Checkout init error:", err);
-      setErrorMessage("Failed to initialize checkout. Please check your cart.");
+      setErrorMessage(err.response?.data?.error || "Failed to initialize checkout. Please check your cart.");
     } finally {
       setLoading(false);
     }
@@ -124,14 +147,27 @@ const Checkout = () => {
         addressId: selectedAddressId,
         paymentMode: mode,
         stripeIntentId: intentId
-      }, { withCredentials: true });
+      }, { withCredentials: true, headers: { 'Idempotency-Key': idempotencyKey } });
+      sessionStorage.removeItem(CHECKOUT_KEY_ITEM);
       navigate('/payment/success');
     } catch (err) {
-      setErrorMessage("Failed to record your order. Please contact support.");
+      setErrorMessage(err.response?.data?.error || "Failed to record your order. Please contact support.");
       setLoading(false);
     }
   };
 
+  if (waitingRoom && !data) {
+    return (
+      <div className="min-h-screen flex flex-col items-center justify-center gap-4 bg-white text-center px-4">
+        <Loader2 className="animate-spin text-orange-500" size={48} />
+        <h2 className="text-2xl font-serif font-bold text-gray-900 italic">You're in the flash-sale queue</h2>
+        {waitingRoom.queuePosition && <p className="text-gray-600">Your position: <span className="font-bold">{waitingRoom.queuePosition}</span></p>}
+        {waitingRoom.error && <p className="text-gray-600">{waitingRoom.error}</p>}
+        <p className="text-xs text-gray-400">Keep this page open. Checkout opens automatically when it is your turn.</p>
+      </div>
+    );
+  }
+
   if (loading && !data) {
     return (
       <div className="min-h-screen flex items-center justify-center bg-white">
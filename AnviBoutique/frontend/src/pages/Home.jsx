@@ -17,7 +17,7 @@ import {
 } from 'lucide-react';
 
 const Home = () => {
-  const [data, setData] = useState({ products: [], categories: [] });
+  const [data, setData] = useState({ newArrivals: [], saleItems: [], categories: [] });
   const [loading, setLoading] = useState(true);
   const [currentSlide, setCurrentSlide] = useState(0);
 
@@ -200,7 +200,7 @@ const Home = () => {
           </div>
 
           <div className="grid grid-cols-1 sm:grid-cols-2 lg:grid-cols-4 gap-8">
-            {data.products.slice(0, 4).map((p) => (
+            {data.newArrivals.slice(0, 4).map((p) => (
               <div key={p.id} className="group relative">
                 <div className="relative aspect-[3/4] rounded-[2rem] overflow-hidden bg-gray-100 shadow-sm">
                   <img 
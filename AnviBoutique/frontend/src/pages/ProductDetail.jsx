@@ -37,6 +37,10 @@ const ProductDetail = () => {
   const [selectedSize, setSelectedSize] = useState('');
   const [isAddingToCart, setIsAddingToCart] = useState(false);
   const [feedback, setFeedback] = useState({ type: null, message: '' });
+  const [reviews, setReviews] = useState([]);
+  const [reviewsCursor, setReviewsCursor] = useState(null);
+  const [reviewSort, setReviewSort] = useState('newest');
+  const [loadingReviews, setLoadingReviews] = useState(false);
 
   useEffect(() => {
     fetchProductDetails();
@@ -50,6 +54,9 @@ const ProductDetail = () => {
       setError(null);
       const response = await axios.get(`http://localhost:8080/api/products/${id}`);
       setData(response.data);
+      setReviews(response.data.reviews || []);
+      setReviewsCursor(response.data.reviewsNextCursor);
+      setReviewSort('newest');
     } catch (err) {
       setError("We couldn't find the product you're looking for.");
       console.error(err);
@@ -58,6 +65,37 @@ const ProductDetail = () => {
     }
   };
 
+  // Reviews are paged by cursor: the first page comes with the product, the rest on demand
+  const fetchReviews = async (sort, cursor) => {
+    try {
+      setLoadingReviews(true);
+      const response = await axios.get(`http://localhost:8080/api/products/${id}/reviews`, {
+        params: { sort, cursor: cursor || undefined }
+      });
+      setReviews(prev => cursor ? [...prev, ...response.data.content] : response.data.content);
+      setReviewsCursor(response.data.nextCursor);
+    } catch (err) {
+      console.error(err);
+    } finally {
+      setLoadingReviews(false);
+    }
+  };
+
+  const handleReviewSortChange = (sort) => {
+    setReviewSort(sort);
+    fetchReviews(sort, null);
+  };
+
+  const handleHelpful = async (reviewId) => {
+    try {
+      await axios.post(`http://localhost:8080/api/products/${id}/reviews/${reviewId}/helpful`, null, { withCredentials: true });
+      setReviews(prev => prev.map(r => r.id === reviewId ? { ...r, helpfulCount: r.helpfulCount + 1 } : r));
+    } catch (err) {
+      if (err.response?.status === 401) navigate('/login');
+      else if (err.response?.status === 409) setFeedback({ type: 'error', message: err.response.data.error });
+    }
+  };
+
   const handleAddToCart = async () => {
     if (data.product.sizeOptions && !selectedSize) {
       setFeedback({ type: 'error', message: 'Please select a size first.' });
@@ -326,7 +364,7 @@ const ProductDetail = () => {
               {[
                 { id: 'desc', label: 'Details' },
                 { id: 'info', label: 'Fabric & Care' },
-                { id: 'reviews', label: `Reviews (${data.reviews?.length || 0})` }
+                { id: 'reviews', label: `Reviews (${data.reviewCount || 0})` }
               ].map(tab => (
                 <button
                   key={tab.id}
@@ -389,14 +427,28 @@ const ProductDetail = () => {
 
             {activeTab === 'reviews' && (
               <div className="animate-in fade-in duration-500 space-y-10">
-                {data.reviews.length === 0 ? (
+                {reviews.length > 0 && (
+                  <div className="flex justify-end">
+                    <select
+                      value={reviewSort}
+                      onChange={(e) => handleReviewSortChange(e.target.value)}
+                      className="bg-white border border-gray-200 rounded-xl px-4 py-2 text-xs font-bold outline-none"
+                    >
+                      <option value="newest">Newest</option>
+                      <option value="helpful">Most Helpful</option>
+                      <option value="highest">Highest Rating</option>
+                      <option value="lowest">Lowest Rating</option>
+                    </select>
+                  </div>
+                )}
+                {reviews.length === 0 ? (
                   <div className="text-center py-10 opacity-30">
                     <Star size={48} className="mx-auto mb-4" />
                     <p className="font-serif italic text-lg text-gray-400">Be the first to share your experience with this {p.category.toLowerCase()}.</p>
                   </div>
                 ) : (
                   <div className="grid gap-8">
-                    {data.reviews.map(review => (
+                    {reviews.map(review => (
                       <div key={review.id} className="bg-slate-50/50 p-8 rounded-3xl border border-gray-50">
                         <div className="flex justify-between items-start mb-4">
                           <div>
@@ -405,17 +457,34 @@ const ProductDetail = () => {
                                 <Star key={i} size={14} fill={i < review.rating ? "currentColor" : "none"} />
                               ))}
                             </div>
-                            <p className="font-bold text-gray-900">{review.user.username}</p>
+                            <p className="font-bold text-gray-900">{review.username}</p>
                           </div>
                           <span className="text-[10px] text-gray-400 font-bold uppercase tracking-widest">
-                            {new Date(review.reviewDate).toLocaleDateString()}
+                            {new Date(review.datePosted).toLocaleDateString()}
                           </span>
                         </div>
                         <p className="text-gray-600 text-sm italic">"{review.comment}"</p>
+                        <button
+                          onClick={() => handleHelpful(review.id)}
+                          className="mt-4 text-[10px] font-bold uppercase tracking-widest text-gray-400 hover:text-orange-500"
+                        >
+                          Helpful ({review.helpfulCount || 0})
+                        </button>
                       </div>
                     ))}
                   </div>
                 )}
+                {reviewsCursor && (
+                  <div className="text-center">
+                    <button
+                      onClick={() => fetchReviews(reviewSort, reviewsCursor)}
+                      disabled={loadingReviews}
+                      className="px-8 py-3 rounded-full border border-gray-200 text-xs font-black uppercase tracking-widest text-gray-600 hover:border-orange-500 disabled:opacity-50"
+                    >
+                      {loadingReviews ? 'Loading...' : 'Show More Reviews'}
+                    </button>
+                  </div>
+                )}
               </div>
             )}
           </div>
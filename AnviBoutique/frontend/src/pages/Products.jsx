@@ -12,7 +12,8 @@ import {
   X,
   SlidersHorizontal,
   Flame,
-  Check
+  Check,
+  Star
 } from 'lucide-react';
 
 const Products = () => {
@@ -42,21 +43,37 @@ const Products = () => {
   // Constants
   const colors = ['Maroon', 'Gold', 'Emerald', 'Silk White', 'Navy', 'Mustard', 'Pink'];
 
+  const [totalElements, setTotalElements] = useState(0);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [facets, setFacets] = useState(null);
+
   useEffect(() => {
     fetchProductsAndCategories();
-  }, [categoryParam, keywordParam]);
+  }, [categoryParam, keywordParam, filters, sortBy]);
 
-  const fetchProductsAndCategories = async () => {
+  // Filtering, sorting and paging are done by the backend; "cursor" continues from the previous page
+  const fetchProductsAndCategories = async (cursor = null) => {
     try {
       setLoading(true);
-      // Fetch products based on category from URL
       const response = await axios.get('http://localhost:8080/api/products', {
-        params: { category: categoryParam },
+        params: {
+          category: categoryParam || undefined,
+          keyword: keywordParam || undefined,
+          sortBy,
+          minPrice: filters.minPrice,
+          maxPrice: filters.maxPrice,
+          status: filters.status || undefined,
+          color: filters.color || undefined,
+          cursor: cursor || undefined
+        },
         withCredentials: true
       });
       
-      setProducts(response.data.products);
+      setProducts(prev => cursor ? [...prev, ...response.data.products] : response.data.products);
       setCategories(response.data.categories);
+      setTotalElements(response.data.totalElements);
+      setNextCursor(response.data.nextCursor);
+      setFacets(response.data.facets);
     } catch (err) {
       console.error("Error loading products:", err);
     } finally {
@@ -64,30 +81,7 @@ const Products = () => {
     }
   };
 
-  // Logic for Client-side Filtering and Sorting
-  const processedProducts = products
-    .filter(p => {
-      // 1. Keyword search (if not handled by backend)
-      const matchesKeyword = keywordParam ? p.name.toLowerCase().includes(keywordParam.toLowerCase()) : true;
-      // 2. Price Range
-      const discountedPrice = p.discountPercent > 0 ? p.price * (1 - p.discountPercent / 100) : p.price;
-      const matchesPrice = discountedPrice >= filters.minPrice && discountedPrice <= filters.maxPrice;
-      // 3. Status
-      let matchesStatus = true;
-      if (filters.status === 'inStock') matchesStatus = p.stockQuantity > 0;
-      if (filters.status === 'onSale') matchesStatus = p.discountPercent > 0;
-      if (filters.status === 'clearance') matchesStatus = p.discountPercent >= 50;
-      // 4. Color (assuming product has a productColor field)
-      const matchesColor = filters.color ? p.productColor === filters.color : true;
-
-      return matchesKeyword && matchesPrice && matchesStatus && matchesColor;
-    })
-    .sort((a, b) => {
-      if (sortBy === 'priceAsc') return a.price - b.price;
-      if (sortBy === 'priceDesc') return b.price - a.price;
-      if (sortBy === 'oldest') return new Date(a.id) - new Date(b.id);
-      return new Date(b.id) - new Date(a.id); // latest
-    });
+  const processedProducts = products;
 
   const handleWishlist = async (productId) => {
     try {
@@ -148,6 +142,7 @@ const Products = () => {
                   <option value="latest">Latest Arrivals</option>
                   <option value="priceAsc">Price: Low to High</option>
                   <option value="priceDesc">Price: High to Low</option>
+                  <option value="rating">Top Rated</option>
                   <option value="oldest">Oldest</option>
                 </select>
               </div>
@@ -182,7 +177,7 @@ const Products = () => {
                       to={`/products?category=${cat}`} 
                       className={`text-sm transition-colors ${categoryParam === cat ? 'text-orange-600 font-bold' : 'text-gray-500 hover:text-gray-900'}`}
                     >
-                      {cat}
+                      {cat}{facets?.categories && ` (${facets.categories[cat] || 0})`}
                     </Link>
                   </li>
                 ))}
@@ -227,7 +222,7 @@ const Products = () => {
                     onClick={() => setFilters({...filters, status: s.id})}
                     className={`w-full text-left text-sm py-1 transition-colors ${filters.status === s.id ? 'text-gray-900 font-bold' : 'text-gray-400 hover:text-gray-600'}`}
                   >
-                    {s.label}
+                    {s.label}{s.id && facets?.statuses && ` (${facets.statuses[s.id] || 0})`}
                   </button>
                 ))}
               </div>
@@ -249,7 +244,7 @@ const Products = () => {
                 {colors.map(color => (
                   <button 
                     key={color}
-                    title={color}
+                    title={facets?.colors ? `${color} (${facets.colors[color] || 0})` : color}
                     onClick={() => setFilters({...filters, color})}
                     className={`w-8 h-8 rounded-full border-2 transition-all transform hover:scale-110 shadow-sm ${filters.color === color ? 'border-orange-500 scale-110 ring-2 ring-orange-50' : 'border-white'}`}
                     style={{ backgroundColor: color.replace(' ', '').toLowerCase() === 'silkwhite' ? '#f8f8f8' : color.toLowerCase() }}
@@ -318,6 +313,13 @@ const Products = () => {
                         <div>
                           <p className="text-[10px] font-black uppercase tracking-widest text-orange-500 mb-1">{p.category}</p>
                           <h3 className="font-bold text-gray-900 group-hover:text-orange-600 transition-colors line-clamp-1 italic font-serif text-lg">{p.name}</h3>
+                          {p.ratingCount > 0 && (
+                            <div className="flex items-center gap-1 mt-1 text-xs text-gray-500">
+                              <Star size={12} className="text-yellow-400" fill="currentColor" />
+                              <span className="font-bold text-gray-700">{Number(p.averageRating).toFixed(1)}</span>
+                              <span>({p.ratingCount})</span>
+                            </div>
+                          )}
                         </div>
                       </div>
                       
@@ -334,6 +336,19 @@ const Products = () => {
                 ))}
               </div>
             )}
+
+            {nextCursor && (
+              <div className="mt-16 text-center">
+                <p className="text-xs text-gray-400 mb-4">Showing {processedProducts.length} of {totalElements}</p>
+                <button 
+                  onClick={() => fetchProductsAndCategories(nextCursor)}
+                  disabled={loading}
+                  className="bg-gray-900 text-white px-10 py-4 rounded-2xl font-bold hover:bg-gray-800 transition-all disabled:opacity-50"
+                >
+                  Load More
+                </button>
+              </div>
+            )}
           </div>
         </div>
       </main>
@@ -124,7 +124,7 @@ const Wishlist = () => {
           <div className="grid grid-cols-1 gap-6">
             {items.map((item) => {
               const p = item.product;
-              const discountedPrice = p.discountPercent > 0 ? p.price * (1 - p.discountPercent / 100) : p.price;
+              const discountedPrice = p.salePrice ?? p.price;
               
               return (
                 <div 
@@ -150,7 +150,7 @@ const Wishlist = () => {
                     <div>
                       <div className="flex flex-wrap items-center justify-center md:justify-start gap-3 mb-2">
                         <span className="text-[10px] font-black uppercase tracking-widest text-orange-500">{p.category}</span>
-                        {p.isClearance && (
+                        {p.discountPercent >= 50 && (
                           <span className="flex items-center gap-1 text-red-600 text-[10px] font-black uppercase tracking-widest">
                             <Flame size={12} /> Clearance
                           </span>
@@ -172,9 +172,6 @@ const Wishlist = () => {
                       )}
                     </div>
 
-                    <p className="text-gray-500 text-sm line-clamp-2 italic max-w-md">
-                      "{p.description}"
-                    </p>
                   </div>
 
                   {/* Actions Area */}
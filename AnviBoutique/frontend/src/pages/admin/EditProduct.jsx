@@ -51,6 +51,8 @@ const EditProduct = () => {
         discountPercent: p.discountPercent || 0,
         sku: p.sku || '',
         stockQuantity: p.stockQuantity || '',
+        // Lets the server apply the edit as a change, keeping units reserved by checkouts meanwhile
+        previousStockQuantity: p.stockQuantity ?? null,
         sizeOptions: p.sizeOptions || '',
         productColor: p.productColor || '',
         productTags: p.productTags || '',
@@ -172,6 +174,7 @@ const EditProduct = () => {
                   type="number" name="stockQuantity" required value={formData.stockQuantity} onChange={handleChange}
                   className="w-full px-4 py-3 rounded-lg border border-gray-200 focus:ring-2 focus:ring-orange-500 outline-none"
                 />
+                <p className="text-xs text-gray-500 mt-1">Units that can still be sold; items held in open checkouts are not included.</p>
               </div>
             </div>
 
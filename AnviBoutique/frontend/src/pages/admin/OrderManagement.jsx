@@ -52,7 +52,7 @@ const OrderManagement = () => {
       // Refresh local state
       setOrders(orders.map(o => o.id === orderId ? { ...o, status: newStatus } : o));
     } catch (err) {
-      alert('Failed to update status.');
+      alert(err.response?.data?.error || 'Failed to update status.');
     }
   };
 
@@ -132,7 +132,7 @@ const Dashboard = () => {
                       alt={p.name}
                       className="w-full h-full object-cover transition-transform duration-700 group-hover:scale-110"
                     />
-                    {p.stockQuantity === 0 && (
+                    {!p.inStock && (
                       <div className="absolute inset-0 bg-black/40 backdrop-blur-[2px] flex items-center justify-center">
                         <span className="bg-white text-black px-4 py-1 rounded-full text-xs font-bold uppercase tracking-widest">Sold Out</span>
                       </div>
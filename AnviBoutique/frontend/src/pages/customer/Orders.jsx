@@ -165,30 +165,33 @@ const Orders = () => {
                       <div key={idx} className="py-6 first:pt-0 last:pb-0 flex flex-col md:flex-row items-center gap-6">
                         <div className="w-20 h-24 bg-gray-50 rounded-xl overflow-hidden shrink-0 border border-gray-100">
                           <img 
-                            src={`/api/public/images/${item.product.imageUrl || 'placeholder.jpg'}`} 
-                            alt={item.product.name}
+                            src={`/api/public/images/${item.imageUrl || 'placeholder.jpg'}`} 
+                            alt={item.productName}
                             className="w-full h-full object-cover"
                           />
                         </div>
                         <div className="flex-1 text-center md:text-left">
-                          <h4 className="font-bold text-gray-900">{item.product.name}</h4>
-                          <p className="text-xs text-gray-400 mt-1">Quantity: {item.quantity} × ₹{item.price.toFixed(2)}</p>
+                          <h4 className="font-bold text-gray-900">{item.productName}</h4>
+                          <p className="text-xs text-gray-400 mt-1">Quantity: {item.quantity} × ₹{(item.lineTotal / item.quantity).toFixed(2)}</p>
                         </div>
                         <div className="flex gap-3">
                           {order.status === 'DELIVERED' && (
                             <button 
-                              onClick={() => openReviewModal(item.product.id, item.product.name)}
+                              onClick={() => openReviewModal(item.productId, item.productName)}
                               className="text-xs font-bold text-orange-600 hover:bg-orange-50 px-4 py-2 rounded-xl transition-all flex items-center gap-2 border border-orange-100"
                             >
                               <Star size={14} fill="currentColor" /> Review Product
                             </button>
                           )}
-                          <Link to={`/products/${item.product.id}`} className="text-xs font-bold text-gray-500 hover:bg-gray-50 px-4 py-2 rounded-xl transition-all flex items-center gap-2 border border-gray-100">
+                          <Link to={`/products/${item.productId}`} className="text-xs font-bold text-gray-500 hover:bg-gray-50 px-4 py-2 rounded-xl transition-all flex items-center gap-2 border border-gray-100">
                             Buy Again
                           </Link>
                         </div>
                       </div>
                     ))}
+                    {order.items.length === 0 && order.legacyItemsSnapshot && (
+                      <p className="py-6 first:pt-0 text-sm text-gray-600">{order.legacyItemsSnapshot}</p>
+                    )}
                   </div>
 
                   {/* Order Footer Actions */}